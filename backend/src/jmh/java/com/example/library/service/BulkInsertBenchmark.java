@@ -0,0 +1,147 @@
+package com.example.library.service;
+
+import com.example.library.LibraryApplication;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Review;
+import com.example.library.repository.BookRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Время одного вызова createBulk для items книг, авторов или отзывов: поднимается контекст
+ * приложения, каждый вызов пишет новые сущности в отдельной транзакции. Без DB_URL
+ * используется H2 в памяти (схема из сущностей), с DB_URL - указанная база PostgreSQL
+ * со схемой из миграций; данные в ней остаются после запуска.
+ * Запуск: ./gradlew jmh -PjmhArgs="BulkInsertBenchmark -p items=10000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkInsertBenchmark {
+
+    // Столько книг подряд получают одного автора: первая книга его создаёт, остальные находят
+    private static final int BOOKS_PER_AUTHOR = 10;
+
+    @Param({"1000", "10000", "100000"})
+    private int items;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private AuthorService authorService;
+    private ReviewService reviewService;
+    private BookRepository bookRepository;
+    // Сквозной номер для уникальных названий и имён между вызовами
+    private int next;
+
+    private List<Book> books;
+    private List<Author> authors;
+    private List<Review> reviews;
+    private int bookId;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        // Аргументы командной строки перекрывают application.properties
+        List<String> args = new ArrayList<>(List.of("--server.port=0",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.com.example.library=WARN",
+                "--library.cache.invalidation.transport=none",
+                "--library.cache.warmup.enabled=false"));
+        if (System.getenv("DB_URL") == null) {
+            args.addAll(List.of("--spring.datasource.url=jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1",
+                    "--spring.datasource.driver-class-name=org.h2.Driver",
+                    "--spring.datasource.username=sa",
+                    "--spring.datasource.password=",
+                    "--spring.jpa.hibernate.ddl-auto=create-drop",
+                    "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                    "--spring.flyway.enabled=false"));
+        }
+        context = new SpringApplicationBuilder(LibraryApplication.class)
+                .run(args.toArray(String[]::new));
+        bookService = context.getBean(BookService.class);
+        authorService = context.getBean(AuthorService.class);
+        reviewService = context.getBean(ReviewService.class);
+        bookRepository = context.getBean(BookRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    // Сущности меняются при сохранении, поэтому каждый вызов получает новые.
+    // Авторы и отзывы добавляются к новой книге: список авторов книги загружается целиком
+    @Setup(Level.Invocation)
+    public void prepare() {
+        books = new ArrayList<>(items);
+        authors = new ArrayList<>(items);
+        reviews = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            int n = next++;
+            Book book = new Book();
+            book.setTitle("Book " + n);
+            // Отдельный экземпляр на книгу, как после разбора JSON; совпадение ищется по имени
+            Author bookAuthor = author(n - n % BOOKS_PER_AUTHOR);
+            book.setAuthors(new ArrayList<>(List.of(bookAuthor)));
+            books.add(book);
+
+            authors.add(author(n));
+
+            Review review = new Review();
+            review.setMessage("Review " + n);
+            reviews.add(review);
+        }
+        Book target = new Book();
+        target.setTitle("Bulk target " + next++);
+        target.setAuthors(new ArrayList<>());
+        target.setReviews(new ArrayList<>());
+        bookId = bookRepository.save(target).getId();
+    }
+
+    @Benchmark
+    public List<Book> books() {
+        return bookService.createBulk(books);
+    }
+
+    @Benchmark
+    public List<Author> authors() {
+        return authorService.createBulk(authors, bookId);
+    }
+
+    @Benchmark
+    public List<Review> reviews() {
+        return reviewService.createBulk(reviews, bookId);
+    }
+
+    // Имя проходит validateAuthorName: только буквы, номер записан буквами
+    private static Author author(int n) {
+        StringBuilder surname = new StringBuilder("S");
+        do {
+            surname.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        Author author = new Author();
+        author.setName("Bench");
+        author.setSurname(surname.toString());
+        return author;
+    }
+}
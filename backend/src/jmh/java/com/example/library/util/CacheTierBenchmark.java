@@ -0,0 +1,94 @@
+package com.example.library.util;
+
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Задержка попадания в кэш книг по уровням: heapHit - значение в куче,
+ * offHeapHit - значение вытеснено и каждый get переносит его обратно
+ * (десериализация плюс перенос вытесненной взамен записи вне кучи).
+ * Запуск: ./gradlew jmh -PjmhArgs="CacheTierBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheTierBenchmark {
+
+    private static final int KEYS = 1024;
+
+    @Param({"1", "8"})
+    private int authorsPerBook;
+
+    private CacheUtil<Integer, Book> heap;
+    private CacheUtil<Integer, Book> tiered;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        heap = CacheUtil.<Integer, Book>builder()
+                .maximumWeight(KEYS)
+                .concurrencyLevel(1)
+                .build();
+        // В куче помещается одна запись, остальные хранятся вне кучи
+        tiered = CacheUtil.<Integer, Book>builder()
+                .maximumWeight(1)
+                .concurrencyLevel(1)
+                .offHeap(64L * 1024 * 1024, Codec.javaSerialization())
+                .build();
+        for (int id = 0; id < KEYS; id++) {
+            Book book = book(id);
+            heap.put(id, book);
+            tiered.put(id, book);
+        }
+    }
+
+    @Benchmark
+    public Book heapHit() {
+        return heap.get(nextKey());
+    }
+
+    @Benchmark
+    public Book offHeapHit() {
+        return tiered.get(nextKey());
+    }
+
+    private int nextKey() {
+        next = (next + 1) & (KEYS - 1);
+        return next;
+    }
+
+    private Book book(int id) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle("Book title number " + id);
+        List<Author> authors = new ArrayList<>();
+        for (int i = 0; i < authorsPerBook; i++) {
+            Author author = new Author();
+            author.setId(id * 10 + i);
+            author.setName("Name" + i);
+            author.setSurname("Surname" + id);
+            authors.add(author);
+        }
+        book.setAuthors(authors);
+        book.setReviews(new ArrayList<>());
+        return book;
+    }
+}
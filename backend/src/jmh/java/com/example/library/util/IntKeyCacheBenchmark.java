@@ -0,0 +1,85 @@
+package com.example.library.util;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Сравнение таблиц сегмента: hash - ConcurrentHashMap, int - IntKeyTable (Builder.intKeys).
+ * Ключи - разреженные id, как у записей в базе. hit и miss - чтение, replace - put
+ * существующего ключа, churn - put следующего по порядку id с вытеснением старейшего.
+ * Выделение памяти на операцию: ./gradlew jmh -PjmhArgs="IntKeyCacheBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntKeyCacheBenchmark {
+
+    private static final int KEYS = 16 * 1024;
+
+    @Param({"hash", "int"})
+    private String table;
+
+    private CacheUtil<Integer, String> cache;
+    private final int[] cached = new int[KEYS];
+    private final int[] absent = new int[KEYS];
+    private int next;
+    private int fresh;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        CacheUtil.Builder<Integer, String> builder = CacheUtil.<Integer, String>builder()
+                .maximumWeight(KEYS)
+                .concurrencyLevel(1);
+        if (table.equals("int")) {
+            builder.intKeys();
+        }
+        cache = builder.build();
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < KEYS; i++) {
+            cached[i] = random.nextInt(1_000, 1_000_000) * 2;
+            absent[i] = cached[i] + 1;
+            cache.put(cached[i], "value");
+        }
+        fresh = 2_000_000;
+    }
+
+    @Benchmark
+    public String hit() {
+        return cache.get(cached[nextIndex()]);
+    }
+
+    @Benchmark
+    public String miss() {
+        return cache.get(absent[nextIndex()]);
+    }
+
+    @Benchmark
+    public void replace() {
+        cache.put(cached[nextIndex()], "value");
+    }
+
+    @Benchmark
+    public void churn() {
+        cache.put(fresh++, "value");
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (KEYS - 1);
+        return next;
+    }
+}
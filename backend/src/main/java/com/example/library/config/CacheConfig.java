@@ -3,26 +3,140 @@ package com.example.library.config;
 import com.example.library.model.Author;
 import com.example.library.model.Book;
 import com.example.library.model.Review;
+import com.example.library.util.CacheTag;
 import com.example.library.util.CacheUtil;
+import com.example.library.util.Codec;
+import com.example.library.util.DependencyIndex;
+import com.example.library.util.InvalidationTransport;
+import com.example.library.util.PostgresInvalidationTransport;
+import com.example.library.util.RenderedResponse;
+import com.example.library.util.Weigher;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 @Configuration
+@EnableConfigurationProperties(CacheProperties.class)
 public class CacheConfig {
 
+    private final CacheProperties cacheProperties;
+
+    public CacheConfig(CacheProperties cacheProperties) {
+        this.cacheProperties = cacheProperties;
+    }
+
+    // Записи всех кэшей помечаются сущностями, данные которых в них вошли
+    @Bean
+    public DependencyIndex cacheDependencies() {
+        return new DependencyIndex();
+    }
+
     @Bean
     public CacheUtil<Integer, Book> bookCacheId() {
-        return new CacheUtil<>(10);
+        return buildCache("books", cacheProperties.getBooks(), Codec.javaSerialization(),
+                CacheTag::ofBook);
     }
 
     @Bean
     public CacheUtil<Integer, Author> authorCacheId() {
-        return new CacheUtil<>(10);
+        return buildCache("authors", cacheProperties.getAuthors(), Codec.javaSerialization(),
+                CacheTag::ofAuthor);
     }
 
     @Bean
     public CacheUtil<Integer, List<Review>> reviewCacheId() {
-        return new CacheUtil<>(5);
+        return buildCache("reviews", cacheProperties.getReviews(), Codec.javaSerialization(),
+                CacheTag::ofReviews);
+    }
+
+    @Bean
+    public CacheUtil<Integer, RenderedResponse> bookResponseCache() {
+        return buildCache("book-responses", cacheProperties.getResponses(),
+                Codec.renderedResponse(), CacheConfig::responseTags);
+    }
+
+    @Bean
+    public CacheUtil<Integer, RenderedResponse> authorResponseCache() {
+        return buildCache("author-responses", cacheProperties.getResponses(),
+                Codec.renderedResponse(), CacheConfig::responseTags);
+    }
+
+    // Отклоняет задачи при заполненной очереди, поэтому читатели никогда не ждут обновления
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor cacheRefreshExecutor() {
+        CacheProperties.Refresh refresh = cacheProperties.getRefresh();
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(refresh.getThreads(), refresh.getThreads(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(refresh.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "cache-refresh-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean
+    public InvalidationTransport invalidationTransport(JdbcTemplate jdbcTemplate,
+                                                       DataSourceProperties dataSource) {
+        CacheProperties.Invalidation invalidation = cacheProperties.getInvalidation();
+        return switch (invalidation.getTransport()) {
+            case NONE -> InvalidationTransport.none();
+            case POSTGRES -> new PostgresInvalidationTransport(jdbcTemplate,
+                    dataSource.determineUrl(), dataSource.determineUsername(),
+                    dataSource.determinePassword(), invalidation.getChannel());
+        };
+    }
+
+    private <V> CacheUtil<Integer, V> buildCache(
+            String name, CacheProperties.Spec spec, Codec<V> offHeapCodec,
+            BiFunction<Integer, V, Collection<CacheTag>> tagger) {
+        CacheUtil.Builder<Integer, V> builder = CacheUtil.<Integer, V>builder()
+                .name(name)
+                .dependencies(cacheDependencies(), tagger)
+                .transactional()
+                .intKeys()
+                .maximumWeight(spec.getMaximumWeight())
+                .weigher(weigherFor(spec.getWeigher()))
+                .expireAfterWrite(spec.getExpireAfterWrite())
+                .expireAfterAccess(spec.getExpireAfterAccess())
+                .expireAbsentAfter(spec.getExpireAbsentAfter());
+        if (spec.getOffHeapMaxSize() != null) {
+            builder.offHeap(spec.getOffHeapMaxSize().toBytes(), offHeapCodec)
+                    .offHeapFile(spec.getOffHeapFile());
+        }
+        if (spec.getEvictionPolicy() == CacheProperties.EvictionPolicy.W_TINY_LFU) {
+            builder.windowTinyLfu();
+        }
+        if (spec.isAdaptive()) {
+            builder.resizable(spec.getAdaptiveMinWeight(), spec.getAdaptiveMaxWeight());
+        }
+        if (spec.getRefreshAfterWrite() != null) {
+            builder.refreshAhead(spec.getRefreshAfterWrite(), spec.getRefreshMinReads(),
+                    cacheRefreshExecutor());
+        }
+        return builder.build();
+    }
+
+    private static Collection<CacheTag> responseTags(Integer id, RenderedResponse response) {
+        return response != null ? response.tags() : List.of();
+    }
+
+    private static <V> Weigher<Integer, V> weigherFor(CacheProperties.WeigherType type) {
+        return switch (type) {
+            case ENTRIES -> Weigher.singleton();
+            case ELEMENTS -> Weigher.elements();
+            case BYTES -> Weigher.estimatedBytes();
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,452 @@
+package com.example.library.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(prefix = "library.cache")
+public class CacheProperties {
+
+    private Spec books = new Spec(10);
+    private Spec authors = new Spec(10);
+    private Spec reviews = new Spec(5);
+    private ResponseSpec responses = new ResponseSpec();
+    private Invalidation invalidation = new Invalidation();
+    private Warmup warmup = new Warmup();
+    private Refresh refresh = new Refresh();
+    private Adaptive adaptive = new Adaptive();
+
+    public Spec getBooks() {
+        return books;
+    }
+
+    public void setBooks(Spec books) {
+        this.books = books;
+    }
+
+    public Spec getAuthors() {
+        return authors;
+    }
+
+    public void setAuthors(Spec authors) {
+        this.authors = authors;
+    }
+
+    public Spec getReviews() {
+        return reviews;
+    }
+
+    public void setReviews(Spec reviews) {
+        this.reviews = reviews;
+    }
+
+    public ResponseSpec getResponses() {
+        return responses;
+    }
+
+    public void setResponses(ResponseSpec responses) {
+        this.responses = responses;
+    }
+
+    public Invalidation getInvalidation() {
+        return invalidation;
+    }
+
+    public void setInvalidation(Invalidation invalidation) {
+        this.invalidation = invalidation;
+    }
+
+    public Warmup getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(Warmup warmup) {
+        this.warmup = warmup;
+    }
+
+    public Refresh getRefresh() {
+        return refresh;
+    }
+
+    public void setRefresh(Refresh refresh) {
+        this.refresh = refresh;
+    }
+
+    public Adaptive getAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(Adaptive adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public enum WeigherType {
+        // Каждая запись весит 1, бюджет задаётся числом ключей
+        ENTRIES,
+        // Вес коллекции равен числу её элементов
+        ELEMENTS,
+        // Вес равен оценке размера значения в байтах
+        BYTES
+    }
+
+    public enum EvictionPolicy {
+        // Вытесняется давно не использованная запись
+        LRU,
+        // Окно LRU и допуск в основную часть по частоте обращений: устойчив к обходам
+        W_TINY_LFU
+    }
+
+    public static class Spec {
+        private long maximumWeight;
+        private WeigherType weigher = WeigherType.ENTRIES;
+        private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+        private Duration expireAfterWrite;
+        private Duration expireAfterAccess;
+        private Duration expireAbsentAfter;
+        // Второй уровень вне кучи: null - отключён
+        private DataSize offHeapMaxSize;
+        // Файл для отображения буфера в память; без него используется direct-память
+        private Path offHeapFile;
+        // Фоновое обновление часто читаемых записей: null - отключено
+        private Duration refreshAfterWrite;
+        private int refreshMinReads = 3;
+        // Границы бюджета при адаптивном размере: 0 - бюджет фиксирован
+        private long adaptiveMinWeight;
+        private long adaptiveMaxWeight;
+
+        public Spec() {
+        }
+
+        public Spec(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        public long getMaximumWeight() {
+            return maximumWeight;
+        }
+
+        public void setMaximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        public WeigherType getWeigher() {
+            return weigher;
+        }
+
+        public void setWeigher(WeigherType weigher) {
+            this.weigher = weigher;
+        }
+
+        public EvictionPolicy getEvictionPolicy() {
+            return evictionPolicy;
+        }
+
+        public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+            this.evictionPolicy = evictionPolicy;
+        }
+
+        public Duration getExpireAfterWrite() {
+            return expireAfterWrite;
+        }
+
+        public void setExpireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+        }
+
+        public Duration getExpireAfterAccess() {
+            return expireAfterAccess;
+        }
+
+        public void setExpireAfterAccess(Duration expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+        }
+
+        public Duration getExpireAbsentAfter() {
+            return expireAbsentAfter;
+        }
+
+        public void setExpireAbsentAfter(Duration expireAbsentAfter) {
+            this.expireAbsentAfter = expireAbsentAfter;
+        }
+
+        public DataSize getOffHeapMaxSize() {
+            return offHeapMaxSize;
+        }
+
+        public void setOffHeapMaxSize(DataSize offHeapMaxSize) {
+            this.offHeapMaxSize = offHeapMaxSize;
+        }
+
+        public Path getOffHeapFile() {
+            return offHeapFile;
+        }
+
+        public void setOffHeapFile(Path offHeapFile) {
+            this.offHeapFile = offHeapFile;
+        }
+
+        public Duration getRefreshAfterWrite() {
+            return refreshAfterWrite;
+        }
+
+        public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+        }
+
+        public int getRefreshMinReads() {
+            return refreshMinReads;
+        }
+
+        public void setRefreshMinReads(int refreshMinReads) {
+            this.refreshMinReads = refreshMinReads;
+        }
+
+        public long getAdaptiveMinWeight() {
+            return adaptiveMinWeight;
+        }
+
+        public void setAdaptiveMinWeight(long adaptiveMinWeight) {
+            this.adaptiveMinWeight = adaptiveMinWeight;
+        }
+
+        public long getAdaptiveMaxWeight() {
+            return adaptiveMaxWeight;
+        }
+
+        public void setAdaptiveMaxWeight(long adaptiveMaxWeight) {
+            this.adaptiveMaxWeight = adaptiveMaxWeight;
+        }
+
+        public boolean isAdaptive() {
+            return adaptiveMinWeight > 0 && adaptiveMaxWeight > 0;
+        }
+    }
+
+    // Кэш готовых JSON-ответов: бюджет в байтах, крупные ответы дополнительно сжимаются
+    public static class ResponseSpec extends Spec {
+        private DataSize gzipMinSize = DataSize.ofKilobytes(1);
+
+        public ResponseSpec() {
+            super(DataSize.ofMegabytes(4).toBytes());
+            setWeigher(WeigherType.BYTES);
+        }
+
+        public DataSize getGzipMinSize() {
+            return gzipMinSize;
+        }
+
+        public void setGzipMinSize(DataSize gzipMinSize) {
+            this.gzipMinSize = gzipMinSize;
+        }
+    }
+
+    public enum TransportType {
+        // Инвалидации не рассылаются (один экземпляр приложения)
+        NONE,
+        // PostgreSQL LISTEN/NOTIFY
+        POSTGRES
+    }
+
+    // Рассылка инвалидаций между экземплярами приложения
+    public static class Invalidation {
+        private TransportType transport = TransportType.NONE;
+        private String channel = "library_cache_invalidation";
+        private Duration flushInterval = Duration.ofMillis(50);
+        private List<String> caches = List.of("books", "authors", "reviews");
+
+        public TransportType getTransport() {
+            return transport;
+        }
+
+        public void setTransport(TransportType transport) {
+            this.transport = transport;
+        }
+
+        public String getChannel() {
+            return channel;
+        }
+
+        public void setChannel(String channel) {
+            this.channel = channel;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public List<String> getCaches() {
+            return caches;
+        }
+
+        public void setCaches(List<String> caches) {
+            this.caches = caches;
+        }
+    }
+
+    // Сохранение самых востребованных id и прогрев кэшей ими при старте
+    public static class Warmup {
+        private boolean enabled = true;
+        private Path file = Path.of("cache", "hot-keys.json");
+        private int maxKeys = 200;
+        private int batchSize = 50;
+        private int parallelism = 4;
+        private Duration timeout = Duration.ofSeconds(20);
+        private Duration persistInterval = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public void setFile(Path file) {
+            this.file = file;
+        }
+
+        public int getMaxKeys() {
+            return maxKeys;
+        }
+
+        public void setMaxKeys(int maxKeys) {
+            this.maxKeys = maxKeys;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public Duration getPersistInterval() {
+            return persistInterval;
+        }
+
+        public void setPersistInterval(Duration persistInterval) {
+            this.persistInterval = persistInterval;
+        }
+    }
+
+    // Общий пул фонового обновления кэшей; при заполненной очереди обновления пропускаются
+    public static class Refresh {
+        private int threads = 2;
+        private int queueCapacity = 64;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * Адаптивные бюджеты кэшей. Заполненность старого поколения после сборки мусора
+     * выше highUsage - кэши сжимаются в shrinkFactor раз; ниже lowUsage - растут
+     * в growFactor раз те кэши, у которых доля промахов по недавно вытесненным ключам
+     * не меньше minGain.
+     */
+    public static class Adaptive {
+        private boolean enabled = true;
+        private Duration interval = Duration.ofSeconds(10);
+        private double highUsage = 0.8;
+        private double lowUsage = 0.6;
+        private double shrinkFactor = 0.5;
+        private double growFactor = 1.25;
+        private double minGain = 0.01;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public double getHighUsage() {
+            return highUsage;
+        }
+
+        public void setHighUsage(double highUsage) {
+            this.highUsage = highUsage;
+        }
+
+        public double getLowUsage() {
+            return lowUsage;
+        }
+
+        public void setLowUsage(double lowUsage) {
+            this.lowUsage = lowUsage;
+        }
+
+        public double getShrinkFactor() {
+            return shrinkFactor;
+        }
+
+        public void setShrinkFactor(double shrinkFactor) {
+            this.shrinkFactor = shrinkFactor;
+        }
+
+        public double getGrowFactor() {
+            return growFactor;
+        }
+
+        public void setGrowFactor(double growFactor) {
+            this.growFactor = growFactor;
+        }
+
+        public double getMinGain() {
+            return minGain;
+        }
+
+        public void setMinGain(double minGain) {
+            this.minGain = minGain;
+        }
+    }
+}
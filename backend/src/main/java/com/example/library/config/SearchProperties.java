@@ -0,0 +1,39 @@
+package com.example.library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "library.search")
+public class SearchProperties {
+
+    private Fuzzy fuzzy = new Fuzzy();
+
+    public Fuzzy getFuzzy() {
+        return fuzzy;
+    }
+
+    public void setFuzzy(Fuzzy fuzzy) {
+        this.fuzzy = fuzzy;
+    }
+
+    public static class Fuzzy {
+        // Минимальное сходство по триграммам (0..1), если запрос не задал своё
+        private double similarityThreshold = 0.3;
+        private int pageSize = 20;
+
+        public double getSimilarityThreshold() {
+            return similarityThreshold;
+        }
+
+        public void setSimilarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+        }
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+    }
+}
@@ -7,10 +7,11 @@ import com.example.library.exception.BadRequestException;
 import com.example.library.exception.InternalServerErrorException;
 import com.example.library.exception.ResourceNotFoundException;
 import com.example.library.mapper.AuthorMapper;
-import com.example.library.mapper.BookMapper;
 import com.example.library.model.Author;
-import com.example.library.model.Book;
 import com.example.library.service.AuthorService;
+import com.example.library.service.BookService;
+import com.example.library.service.ResponseCacheService;
+import com.example.library.util.KeysetPage;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -20,6 +21,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -28,9 +30,11 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @RestController
 @RequestMapping("/authors")
@@ -38,15 +42,18 @@ import org.springframework.web.bind.annotation.RestController;
 public class AuthorController {
 
     private final AuthorService authorService;
+    private final BookService bookService;
     private final AuthorMapper authorMapper;
-    private final BookMapper bookMapper;
+    private final ResponseCacheService responseCacheService;
 
     @Autowired
-    public AuthorController(AuthorService authorService,
-                            AuthorMapper authorMapper, BookMapper bookMapper) {
+    public AuthorController(AuthorService authorService, BookService bookService,
+                            AuthorMapper authorMapper,
+                            ResponseCacheService responseCacheService) {
         this.authorService = authorService;
+        this.bookService = bookService;
         this.authorMapper = authorMapper;
-        this.bookMapper = bookMapper;
+        this.responseCacheService = responseCacheService;
     }
 
     @PostMapping
@@ -89,21 +96,39 @@ public class AuthorController {
     @GetMapping
     @CountVisit
     @Operation(
-            summary = "Получить всех авторов",
-            description = "Возвращает список всех авторов",
+            summary = "Получить авторов постранично",
+            description = "Возвращает страницу авторов. Курсор следующей страницы передаётся"
+                    + " в заголовках X-Next-Cursor и Link",
             responses = {   @ApiResponse(
                             responseCode = "200",
                             description = "Успешный запрос",
-                            content = @Content(schema = @Schema(implementation = AuthorDto.class)))
+                            content = @Content(schema = @Schema(implementation = AuthorDto.class))),
+                            @ApiResponse(
+                            responseCode = "400",
+                            description = "Некорректный курсор или сортировка")
             }
     )
-    public ResponseEntity<List<AuthorDto>> getAll() {
+    public ResponseEntity<List<AuthorDto>> getAll(
+            @RequestParam(defaultValue = "id")
+            @Parameter(description = "Сортировка: id или surname", example = "surname")
+            String sort,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Курсор из заголовка X-Next-Cursor прошлой страницы")
+            String cursor,
+
+            @RequestParam(defaultValue = KeysetPage.DEFAULT_LIMIT)
+            @Parameter(description = "Размер страницы, не больше 100", example = "20")
+            int limit,
+
+            @RequestParam(defaultValue = "false")
+            @Parameter(description = "Вернуть общее число авторов в заголовке X-Total-Count")
+            boolean withTotal) {
         try {
-            List<Author> authors = authorService.readAll();
-            List<AuthorDto> authorDtos = authors.stream()
-                    .map(authorMapper::toDto)
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(authorDtos);
+            return authorService.readPage(sort, cursor, limit, withTotal)
+                    .toResponseEntity(ServletUriComponentsBuilder.fromCurrentRequest());
+        } catch (BadRequestException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new InternalServerErrorException("Internal server error", ex);
         }
@@ -123,15 +148,17 @@ public class AuthorController {
                             description = "Автор не найден")
             }
     )
-    public ResponseEntity<AuthorDto> getAuthorById(
+    public ResponseEntity<byte[]> getAuthorById(
             @PathVariable
             @Parameter(description = "ID автора", example = "1")
-            int id) {
+            int id,
+
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+            @Parameter(hidden = true)
+            String acceptEncoding) {
 
         try {
-            Author author = authorService.findById(id);
-            AuthorDto authorDto = authorMapper.toDto(author);
-            return ResponseEntity.ok(authorDto);
+            return responseCacheService.getAuthor(id).toResponseEntity(acceptEncoding);
         } catch (ResourceNotFoundException ex) {
             throw ex;
         } catch (Exception ex) {
@@ -262,18 +289,14 @@ public class AuthorController {
             int id) {
 
         try {
-            Author author = authorService.findById(id);
-            List<Book> books = author.getBooks();
+            authorService.findById(id);
+            List<BookDto> books = bookService.findByAuthor(id);
 
             if (books == null || books.isEmpty()) {
                 throw new BadRequestException("У автора с ID " + id + " нет связанных книг");
             }
 
-            List<BookDto> bookDtos = books.stream()
-                    .map(bookMapper::toDto)
-                    .collect(Collectors.toList());
-
-            return ResponseEntity.ok(bookDtos);
+            return ResponseEntity.ok(books);
         } catch (ResourceNotFoundException ex) {
             throw ex;
         } catch (BadRequestException ex) {
@@ -3,6 +3,7 @@ package com.example.library.controller;
 import com.example.library.annotation.CountVisit;
 import com.example.library.dto.BookDto;
 import com.example.library.dto.CreateBookDto;
+import com.example.library.dto.SuggestionDto;
 import com.example.library.exception.ErrorMessages;
 import com.example.library.exception.ResourceNotFoundException;
 import com.example.library.mapper.BookMapper;
@@ -10,6 +11,10 @@ import com.example.library.model.Author;
 import com.example.library.model.Book;
 import com.example.library.model.Review;
 import com.example.library.service.BookService;
+import com.example.library.service.ResponseCacheService;
+import com.example.library.service.SuggestService;
+import com.example.library.util.KeysetPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -17,10 +22,14 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -28,22 +37,36 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @RestController
 @RequestMapping("/books")
 @Tag(name = "Book Controller", description = "API для управления книгами")
 public class BookController {
 
+    // Книг в одной части выгрузки: совпадает с fetch size курсора
+    private static final int EXPORT_CHUNK_SIZE = 500;
+
     private final BookService bookService;
     private final BookMapper bookMapper;
+    private final ResponseCacheService responseCacheService;
+    private final ObjectMapper objectMapper;
+    private final SuggestService suggestService;
 
     @Autowired
-    public BookController(BookService bookService, BookMapper bookMapper) {
+    public BookController(BookService bookService, BookMapper bookMapper,
+                          ResponseCacheService responseCacheService, ObjectMapper objectMapper,
+                          SuggestService suggestService) {
         this.bookService = bookService;
         this.bookMapper = bookMapper;
+        this.responseCacheService = responseCacheService;
+        this.objectMapper = objectMapper;
+        this.suggestService = suggestService;
     }
 
     @PostMapping
@@ -92,15 +115,56 @@ public class BookController {
 
     @GetMapping
     @CountVisit("/books")
-    @Operation(summary = "Получить все книги", description = "Возвращает список всех книг")
+    @Operation(summary = "Получить книги постранично",
+            description = "Возвращает страницу книг. Курсор следующей страницы передаётся"
+                    + " в заголовках X-Next-Cursor и Link")
     @ApiResponse(responseCode = "200", description = "Успешный запрос",
             content = @Content(schema = @Schema(implementation = BookDto.class)))
-    public ResponseEntity<List<BookDto>> getAll() {
-        List<Book> books = bookService.readAll();
-        List<BookDto> bookDtos = books.stream()
-                .map(bookMapper::toDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(bookDtos);
+    @ApiResponse(responseCode = "400", description = "Некорректный курсор или сортировка")
+    public ResponseEntity<List<BookDto>> getAll(
+            @RequestParam(defaultValue = "id")
+            @Parameter(description = "Сортировка: id или title", example = "title")
+            String sort,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Курсор из заголовка X-Next-Cursor прошлой страницы")
+            String cursor,
+
+            @RequestParam(defaultValue = KeysetPage.DEFAULT_LIMIT)
+            @Parameter(description = "Размер страницы, не больше 100", example = "20")
+            int limit,
+
+            @RequestParam(defaultValue = "false")
+            @Parameter(description = "Вернуть общее число книг в заголовке X-Total-Count")
+            boolean withTotal) {
+        return bookService.readPage(sort, cursor, limit, withTotal)
+                .toResponseEntity(ServletUriComponentsBuilder.fromCurrentRequest());
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @CountVisit("/books")
+    @Operation(summary = "Выгрузить весь каталог",
+            description = "Потоковая выгрузка всех книг по запросу с Accept: application/x-ndjson."
+                    + " Каждая книга - отдельная строка JSON, ответ пишется по мере чтения")
+    @ApiResponse(responseCode = "200", description = "Успешный запрос",
+            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = BookDto.class)))
+    public ResponseEntity<StreamingResponseBody> exportAll() {
+        StreamingResponseBody body = out -> bookService.forEachChunk(EXPORT_CHUNK_SIZE,
+                chunk -> {
+                    try {
+                        for (BookDto book : chunk) {
+                            out.write(objectMapper.writeValueAsBytes(book));
+                            out.write('\n');
+                        }
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -109,15 +173,12 @@ public class BookController {
     @ApiResponse(responseCode = "200", description = "Книга найдена",
             content = @Content(schema = @Schema(implementation = BookDto.class)))
     @ApiResponse(responseCode = "404", description = "Книга не найдена")
-    public ResponseEntity<BookDto> getBookById(@PathVariable int id) {
-        Book book = bookService.findById(id);
-
-        if (book == null) {
-            throw new ResourceNotFoundException(
-                    String.format(ErrorMessages.BOOK_NOT_FOUND, "id", id));
-        }
-
-        return ResponseEntity.ok(bookMapper.toDto(book));
+    public ResponseEntity<byte[]> getBookById(
+            @PathVariable int id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+            @Parameter(hidden = true)
+            String acceptEncoding) {
+        return responseCacheService.getBook(id).toResponseEntity(acceptEncoding);
     }
 
     @GetMapping("/search/by-title")
@@ -139,29 +200,70 @@ public class BookController {
         return ResponseEntity.ok(bookDto);
     }
 
+    // Без @CountVisit: строка поиска запрашивает подсказки на каждое нажатие клавиши
+    @GetMapping("/suggest")
+    @Operation(summary = "Подсказки для строки поиска",
+            description = "Книги и авторы, у которых название или имя содержит слово,"
+                    + " начинающееся с prefix. Отвечает из индекса в памяти, без базы")
+    @ApiResponse(responseCode = "200", description = "Подсказки, возможно пустые",
+            content = @Content(schema = @Schema(implementation = SuggestionDto.class)))
+    public ResponseEntity<List<SuggestionDto>> suggest(
+            @Parameter(description = "Начало слова", example = "вой")
+            @RequestParam String prefix,
+            @Parameter(description = "Число подсказок, не больше 50")
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(suggestService.suggest(prefix, limit));
+    }
+
     @GetMapping("/contain")
     @CountVisit("/books/contain")
-    @Operation(summary = "Получить книгу по слову в отзыве",
-            description = "Возвращает книгу по слову в отзыве")
-    @ApiResponse(responseCode = "200", description = "Книга найдена",
+    @Operation(summary = "Получить книги по словам в отзывах",
+            description = "Полнотекстовый поиск по отзывам, лучшие совпадения первыми."
+                    + " Слова через пробел должны встретиться все, \"фраза в кавычках\" -"
+                    + " подряд, слово* - как начало слова")
+    @ApiResponse(responseCode = "200", description = "Книги найдены",
             content = @Content(schema = @Schema(implementation = BookDto.class)))
-    @ApiResponse(responseCode = "404", description = "Книга не найдена")
+    @ApiResponse(responseCode = "400", description = "В запросе нет ни одного слова")
+    @ApiResponse(responseCode = "404", description = "Книги не найдены")
     public ResponseEntity<List<BookDto>> getBooksByReviewMessageContaining(
-            @RequestParam String message) {
+            @RequestParam String message,
+            @Parameter(description = "Номер страницы с нуля")
+            @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Размер страницы, не больше 100")
+            @RequestParam(defaultValue = KeysetPage.DEFAULT_LIMIT) int limit) {
 
-        List<Book> books = bookService.findBooksByReviewMessageContaining(message);
+        List<BookDto> books = bookService.findBooksByReviewMessageContaining(message, page,
+                limit);
 
         if (books != null && !books.isEmpty()) {
-            List<BookDto> bookDtos = books.stream()
-                    .map(bookMapper::toDto)
-                    .collect(Collectors.toList());
-
-            return ResponseEntity.ok(bookDtos);
+            return ResponseEntity.ok(books);
         } else {
             return ResponseEntity.notFound().build();
         }
     }
 
+    @GetMapping("/search/fuzzy")
+    @CountVisit("/books/search/fuzzy")
+    @Operation(summary = "Нечёткий поиск книг",
+            description = "Ищет книги по похожему названию или имени и фамилии автора,"
+                    + " допуская опечатки. Самые похожие идут первыми")
+    @ApiResponse(responseCode = "200", description = "Книги найдены",
+            content = @Content(schema = @Schema(implementation = BookDto.class)))
+    @ApiResponse(responseCode = "400", description = "Пустой запрос или неверный порог")
+    @ApiResponse(responseCode = "404", description = "Книги не найдены")
+    public ResponseEntity<List<BookDto>> getBooksFuzzy(
+            @Parameter(description = "Название или автор, можно с опечатками",
+                    example = "Вона и мир")
+            @RequestParam String query,
+            @Parameter(description = "Минимальное сходство от 0 до 1, по умолчанию 0.3")
+            @RequestParam(required = false) Double threshold,
+            @Parameter(description = "Номер страницы с нуля")
+            @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Размер страницы, не больше 100")
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(bookService.findFuzzy(query, threshold, page, limit));
+    }
+
     @GetMapping("/search/by-author")
     @CountVisit
     @Operation(summary = "Получить книгу по имени и фамилии автора",
@@ -177,13 +279,7 @@ public class BookController {
             @RequestParam
             @Parameter(description = "Фамилия автора", example = "Orwell")
             String surname) {
-        List<Book> books = bookService.findBooksByAuthorNameAndSurnameNative(name, surname);
-
-        List<BookDto> bookDtos = books.stream()
-                .map(bookMapper::toDto)
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(bookDtos);
+        return ResponseEntity.ok(bookService.findBooksByAuthorNameAndSurname(name, surname));
     }
 
     @PutMapping("/{id}")
@@ -0,0 +1,42 @@
+package com.example.library.controller;
+
+import com.example.library.annotation.CountVisit;
+import com.example.library.dto.CacheRegionStatsDto;
+import com.example.library.dto.CacheStatsDto;
+import com.example.library.service.CacheStatsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/cache")
+@Tag(name = "Cache Controller", description = "API для мониторинга кэшей")
+public class CacheController {
+    private final CacheStatsService cacheStatsService;
+
+    public CacheController(CacheStatsService cacheStatsService) {
+        this.cacheStatsService = cacheStatsService;
+    }
+
+    @GetMapping("/stats")
+    @CountVisit
+    @Operation(summary = "Получить статистику кэшей",
+            description = "Возвращает попадания, промахи, вытеснения, время загрузки"
+                    + " и оценку занимаемой памяти для каждого кэша")
+    public ResponseEntity<List<CacheStatsDto>> getCacheStats() {
+        return ResponseEntity.ok(cacheStatsService.getAllStats());
+    }
+
+    @GetMapping("/regions")
+    @CountVisit
+    @Operation(summary = "Получить статистику кэша второго уровня",
+            description = "Возвращает попадания, промахи и записи для каждого региона"
+                    + " кэша сущностей, коллекций и запросов Hibernate")
+    public ResponseEntity<List<CacheRegionStatsDto>> getRegionStats() {
+        return ResponseEntity.ok(cacheStatsService.getRegionStats());
+    }
+}
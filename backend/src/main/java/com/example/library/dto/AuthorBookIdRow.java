@@ -0,0 +1,7 @@
+package com.example.library.dto;
+
+import com.example.library.model.Author;
+
+// Автор и id одной из его книг; bookId == null, если книг нет
+public record AuthorBookIdRow(Author author, Integer bookId) {
+}
@@ -16,6 +16,15 @@ public class AuthorDto {
     @Schema(description = "Фамилия автора", example = "Толстой")
     private String surname;
 
+    public AuthorDto() {
+    }
+
+    public AuthorDto(int id, String name, String surname) {
+        this.id = id;
+        this.name = name;
+        this.surname = surname;
+    }
+
     public int getId() {
         return id;
     }
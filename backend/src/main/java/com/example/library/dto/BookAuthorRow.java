@@ -0,0 +1,9 @@
+package com.example.library.dto;
+
+// Автор книги из пакетного запроса по id книг
+public record BookAuthorRow(int bookId, int id, String name, String surname) {
+
+    public AuthorDto toDto() {
+        return new AuthorDto(id, name, surname);
+    }
+}
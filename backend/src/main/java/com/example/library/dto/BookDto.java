@@ -21,6 +21,15 @@ public class BookDto {
     @Schema(description = "Список отзывов о книге")
     private List<ReviewDto> reviews;
 
+    public BookDto() {
+    }
+
+    // Для проекций JPQL: авторы и отзывы заполняются отдельными запросами
+    public BookDto(int id, String title) {
+        this.id = id;
+        this.title = title;
+    }
+
     public int getId() {
         return id;
     }
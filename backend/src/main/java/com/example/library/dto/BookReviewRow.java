@@ -0,0 +1,9 @@
+package com.example.library.dto;
+
+// Отзыв книги из пакетного запроса по id книг
+public record BookReviewRow(int bookId, int id, String message) {
+
+    public ReviewDto toDto() {
+        return new ReviewDto(id, message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.library.dto;
+
+// Книга из полнотекстового поиска: нативный запрос отдаёт строки через интерфейсную проекцию
+public interface BookSearchHit {
+
+    Integer getId();
+
+    String getTitle();
+
+    default BookDto toDto() {
+        return new BookDto(getId(), getTitle());
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.library.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Статистика региона кэша второго уровня Hibernate")
+public record CacheRegionStatsDto(
+        @Schema(description = "Имя региона", example = "com.example.library.model.Book")
+        String region,
+        long hitCount,
+        long missCount,
+        long putCount,
+        @Schema(description = "Доля попаданий", example = "0.95")
+        double hitRatio
+) {}
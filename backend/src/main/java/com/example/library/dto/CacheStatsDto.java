@@ -0,0 +1,34 @@
+package com.example.library.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Статистика кэша")
+public record CacheStatsDto(
+        @Schema(description = "Имя кэша", example = "books")
+        String name,
+        @Schema(description = "Число записей")
+        long size,
+        @Schema(description = "Суммарный вес записей")
+        long weightedSize,
+        @Schema(description = "Максимальный вес")
+        long maximumWeight,
+        @Schema(description = "Оценка занимаемой памяти в байтах")
+        long estimatedFootprintBytes,
+        long hitCount,
+        long missCount,
+        @Schema(description = "Доля попаданий", example = "0.95")
+        double hitRatio,
+        long evictionCount,
+        long expirationCount,
+        long loadSuccessCount,
+        long loadFailureCount,
+        @Schema(description = "Среднее время загрузки при промахе, мс")
+        double averageLoadPenaltyMillis,
+        @Schema(description = "Число записей вне кучи")
+        long offHeapSize,
+        @Schema(description = "Занято байт вне кучи")
+        long offHeapUsedBytes,
+        @Schema(description = "Размер буфера вне кучи в байтах, 0 - уровень отключён")
+        long offHeapMaximumBytes,
+        long offHeapEvictionCount
+) {}
@@ -10,6 +10,14 @@ public class ReviewDto {
     @Schema(description = "Текст отзыва", example = "Отличная книга!")
     private String message;
 
+    public ReviewDto() {
+    }
+
+    public ReviewDto(int id, String message) {
+        this.id = id;
+        this.message = message;
+    }
+
     public int getId() {
         return id;
     }
@@ -0,0 +1,27 @@
+package com.example.library.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Подсказка для строки поиска")
+public record SuggestionDto(
+        @Schema(description = "Что найдено: книга или автор", example = "BOOK")
+        Type type,
+        @Schema(description = "ID книги или автора", example = "1")
+        int id,
+        @Schema(description = "Название книги или имя и фамилия автора",
+                example = "Война и мир")
+        String text) {
+
+    public enum Type {
+        BOOK,
+        AUTHOR
+    }
+
+    public static SuggestionDto book(int id, String title) {
+        return new SuggestionDto(Type.BOOK, id, title);
+    }
+
+    public static SuggestionDto author(int id, String name, String surname) {
+        return new SuggestionDto(Type.AUTHOR, id, name + " " + surname);
+    }
+}
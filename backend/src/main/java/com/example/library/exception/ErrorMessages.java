@@ -37,5 +37,13 @@ public final class ErrorMessages {
     public static final String LIST_CANNOT_BE_NULL_OR_EMPTY = "%s cannot be null or empty";
     public static final String BOOK_AUTHORS_EMPTY = "is empty";
 
+    public static final String PAGE_CURSOR_INVALID = "Page cursor is malformed";
+    public static final String PAGE_SORT_INVALID = "Unsupported sort '%s', expected one of: %s";
+
+    public static final String SEARCH_QUERY_EMPTY = "Search query must contain at least one word";
+    public static final String SEARCH_THRESHOLD_INVALID =
+            "Similarity threshold must be between 0 and 1";
+    public static final String BOOKS_NOT_FOUND_SIMILAR = "No books found similar to: %s";
+
     private ErrorMessages() {}
 }
\ No newline at end of file
@@ -2,27 +2,39 @@ package com.example.library.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToMany;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Transient;
+import java.io.Serializable;
 import java.util.List;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Schema(description = "Сущность автора")
 @JsonIdentityInfo(
         generator = ObjectIdGenerators.PropertyGenerator.class,
         property = "id")
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
-public class Author {
+public class Author implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "author_id_seq")
+    @SequenceGenerator(name = "author_id_seq", sequenceName = "author_id_seq", allocationSize = 50)
     @Schema(description = "Уникальный идентификатор автора", example = "1")
     private int id;
 
@@ -32,12 +44,18 @@ public class Author {
     @Schema(description = "Фамилия автора", example = "Толстой")
     private String surname;
 
-    @ManyToMany(mappedBy = "authors", fetch = FetchType.EAGER)
+    @ManyToMany(mappedBy = "authors", fetch = FetchType.LAZY)
     //@JsonIgnore
     @JsonBackReference
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @Schema(description = "Список книг автора")
     private List<Book> books;
 
+    // id книг для меток кэша, когда коллекция книг не загружена; в базе не хранится
+    @Transient
+    @JsonIgnore
+    private List<Integer> bookIds;
+
     public int getId() {
         return id;
     }
@@ -69,4 +87,12 @@ public class Author {
     public void setBooks(List<Book> books) {
         this.books = books;
     }
+
+    public List<Integer> getBookIds() {
+        return bookIds;
+    }
+
+    public void setBookIds(List<Integer> bookIds) {
+        this.bookIds = bookIds;
+    }
 }
\ No newline at end of file
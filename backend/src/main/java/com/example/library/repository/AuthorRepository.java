@@ -1,10 +1,119 @@
 package com.example.library.repository;
 
+import com.example.library.dto.AuthorBookIdRow;
+import com.example.library.dto.AuthorDto;
 import com.example.library.model.Author;
+import jakarta.persistence.QueryHint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface AuthorRepository extends JpaRepository<Author, Integer> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Author findByNameAndSurname(String name, String surname);
-}
\ No newline at end of file
+
+    List<Author> findByNameInAndSurnameIn(Collection<String> names, Collection<String> surnames);
+
+    // Уже сохранённые авторы с теми же именем и фамилией, что у переданных, одним запросом
+    // вместо findByNameAndSurname на каждого. Ключ - fullName
+    default Map<List<String>, Author> findExistingByFullName(Collection<Author> authors) {
+        Set<String> names = new HashSet<>();
+        Set<String> surnames = new HashSet<>();
+        for (Author author : authors) {
+            names.add(author.getName());
+            surnames.add(author.getSurname());
+        }
+        names.remove(null);
+        surnames.remove(null);
+        Map<List<String>, Author> existing = new HashMap<>();
+        if (names.isEmpty() || surnames.isEmpty()) {
+            return existing;
+        }
+        // IN по обоим столбцам вернёт и лишние сочетания имени и фамилии; их ключи не ищутся
+        for (Author author : findByNameInAndSurnameIn(names, surnames)) {
+            existing.putIfAbsent(fullName(author), author);
+        }
+        return existing;
+    }
+
+    static List<String> fullName(Author author) {
+        return Arrays.asList(author.getName(), author.getSurname());
+    }
+
+    // Книги автора ленивые; с ними загружается только тот, кому нужны связи
+    @EntityGraph(attributePaths = "books")
+    Optional<Author> findWithBooksById(int id);
+
+    // Строка автора и id его книг одним запросом: по строке результата на книгу,
+    // сами книги и коллекция автора не загружаются
+    @Query("SELECT new com.example.library.dto.AuthorBookIdRow(a, b.id)"
+            + " FROM Author a LEFT JOIN a.books b WHERE a.id = :authorId")
+    List<AuthorBookIdRow> findBookIdRows(@Param("authorId") int authorId);
+
+    @Query("SELECT new com.example.library.dto.AuthorBookIdRow(a, b.id)"
+            + " FROM Author a LEFT JOIN a.books b WHERE a.id IN :authorIds")
+    List<AuthorBookIdRow> findBookIdRowsByIdIn(@Param("authorIds") Collection<Integer> authorIds);
+
+    // Для кэша: ответ по автору не содержит книг, поэтому коллекция не загружается,
+    // а id книг нужны только для меток зависимостей записи
+    default Optional<Author> findWithBookIdsById(int id) {
+        return withBookIds(findBookIdRows(id)).stream().findFirst();
+    }
+
+    // Пакетная форма findWithBookIdsById для прогрева кэша
+    default List<Author> findWithBookIdsByIdIn(Collection<Integer> ids) {
+        return withBookIds(findBookIdRowsByIdIn(ids));
+    }
+
+    private static List<Author> withBookIds(List<AuthorBookIdRow> rows) {
+        Map<Integer, Author> authors = new LinkedHashMap<>();
+        for (AuthorBookIdRow row : rows) {
+            Author author = authors.computeIfAbsent(row.author().getId(), id -> {
+                row.author().setBookIds(new ArrayList<>());
+                return row.author();
+            });
+            if (row.bookId() != null) {
+                author.getBookIds().add(row.bookId());
+            }
+        }
+        return new ArrayList<>(authors.values());
+    }
+
+    // Страницы списка авторов строятся сразу в DTO, без сущностей
+    @Query("SELECT new com.example.library.dto.AuthorDto(a.id, a.name, a.surname)"
+            + " FROM Author a WHERE a.id > :afterId ORDER BY a.id")
+    List<AuthorDto> findPageById(@Param("afterId") int afterId, Limit limit);
+
+    @Query("SELECT new com.example.library.dto.AuthorDto(a.id, a.name, a.surname)"
+            + " FROM Author a ORDER BY a.surname, a.id")
+    List<AuthorDto> findFirstPageBySurname(Limit limit);
+
+    @Query("SELECT new com.example.library.dto.AuthorDto(a.id, a.name, a.surname)"
+            + " FROM Author a WHERE a.surname >= :afterSurname"
+            + " AND (a.surname > :afterSurname OR a.id > :afterId) ORDER BY a.surname, a.id")
+    List<AuthorDto> findPageBySurname(@Param("afterSurname") String afterSurname,
+                                      @Param("afterId") int afterId, Limit limit);
+
+    // Все авторы для индекса подсказок; поток нужно закрыть и читать внутри транзакции
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.example.library.dto.AuthorDto(a.id, a.name, a.surname)"
+            + " FROM Author a ORDER BY a.id")
+    Stream<AuthorDto> streamAll();
+}
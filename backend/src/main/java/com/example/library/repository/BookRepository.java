@@ -1,27 +1,136 @@
 package com.example.library.repository;
 
+import com.example.library.dto.BookAuthorRow;
+import com.example.library.dto.BookDto;
+import com.example.library.dto.BookSearchHit;
 import com.example.library.model.Book;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Integer> {
+    @EntityGraph(attributePaths = "authors")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Book> findByTitle(String title);
 
-    @Query("SELECT DISTINCT b FROM Book b JOIN b.reviews r"
-            + " WHERE LOWER(r.message) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-    List<Book> findBooksByReviewMessageContaining(@Param("keyword") String keyword);
+    // Коллекции книги ленивые: каждый сценарий догружает только то, что отдаёт.
+    // Авторы и отзывы - два списка, и одно соединение с обоими дало бы декартово
+    // произведение, поэтому отзывы догружаются отдельным запросом
+    @EntityGraph(attributePaths = "authors")
+    Optional<Book> findWithAuthorsById(int id);
 
-    @Query(value = "SELECT b.* FROM book b "
-            + "JOIN book_author ba ON b.id = ba.book_id "
-            + "JOIN author a ON ba.author_id = a.id "
-            + "WHERE LOWER(a.name) = LOWER(:authorName) AND"
-            + " LOWER(a.surname) = LOWER(:authorSurname)", nativeQuery = true)
-    List<Book> findBooksByAuthorNameAndSurnameNative(
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.reviews WHERE b IN :books")
+    List<Book> fetchReviews(@Param("books") Collection<Book> books);
+
+    // Оба запроса идут в одной транзакции, поэтому книга загружена целиком и годится
+    // для кэша, в том числе при фоновом обновлении вне HTTP-запроса
+    @Transactional(readOnly = true)
+    default Optional<Book> findDetailById(int id) {
+        Optional<Book> book = findWithAuthorsById(id);
+        book.ifPresent(found -> fetchReviews(List.of(found)));
+        return book;
+    }
+
+    // Пакетная форма findDetailById для прогрева кэша: тот же план выборки на всю пачку
+    @EntityGraph(attributePaths = "authors")
+    List<Book> findWithAuthorsByIdIn(Collection<Integer> ids);
+
+    @Transactional(readOnly = true)
+    default List<Book> findDetailByIdIn(Collection<Integer> ids) {
+        List<Book> books = findWithAuthorsByIdIn(ids);
+        if (!books.isEmpty()) {
+            fetchReviews(books);
+        }
+        return books;
+    }
+
+    // Проекции для списков и поиска: DTO строятся прямо из строк результата, без сущностей,
+    // контекста персистентности и проверки изменений. Авторы и отзывы догружаются
+    // отдельными запросами по id книг
+    @Query("SELECT new com.example.library.dto.BookDto(b.id, b.title) FROM Book b"
+            + " JOIN b.authors a WHERE a.id = :authorId ORDER BY b.id")
+    List<BookDto> findByAuthorId(@Param("authorId") int authorId);
+
+    // Полнотекстовый поиск по отзывам через GIN-индекс на review.message_tsv. Книга получает
+    // лучший ранг среди своих отзывов; query - готовый tsquery (см. SearchQuery)
+    @Query(value = "SELECT b.id AS id, b.title AS title"
+            + " FROM (SELECT r.book_id, MAX(ts_rank_cd(r.message_tsv, q.query)) AS rank"
+            + "       FROM review r, to_tsquery('simple', :query) AS q(query)"
+            + "       WHERE r.message_tsv @@ q.query GROUP BY r.book_id) hit"
+            + " JOIN book b ON b.id = hit.book_id"
+            + " ORDER BY hit.rank DESC, b.id LIMIT :limit OFFSET :offset",
+            nativeQuery = true)
+    List<BookSearchHit> searchByReviewMessage(@Param("query") String query,
+                                              @Param("limit") int limit,
+                                              @Param("offset") long offset);
+
+    // Порог оператора % из pg_trgm до конца текущей транзакции
+    @Query(value = "SELECT set_config('pg_trgm.similarity_threshold',"
+            + " CAST(:threshold AS text), true)", nativeQuery = true)
+    String setSimilarityThreshold(@Param("threshold") double threshold);
+
+    // Нечёткий поиск по названию и по имени с фамилией авторов через триграммные
+    // GIN-индексы; книга получает лучшее сходство из совпавших. Порог задаётся
+    // setSimilarityThreshold в той же транзакции
+    @Query(value = "SELECT b.id AS id, b.title AS title"
+            + " FROM (SELECT t.id AS book_id, similarity(t.title, :query) AS score"
+            + "       FROM book t WHERE t.title % :query"
+            + "       UNION ALL"
+            + "       SELECT ba.book_id, similarity(a.name || ' ' || a.surname, :query)"
+            + "       FROM author a JOIN book_author ba ON ba.author_id = a.id"
+            + "       WHERE (a.name || ' ' || a.surname) % :query) hit"
+            + " JOIN book b ON b.id = hit.book_id"
+            + " GROUP BY b.id, b.title"
+            + " ORDER BY MAX(hit.score) DESC, b.id LIMIT :limit OFFSET :offset",
+            nativeQuery = true)
+    List<BookSearchHit> searchFuzzy(@Param("query") String query,
+                                    @Param("limit") int limit,
+                                    @Param("offset") long offset);
+
+    @Query("SELECT new com.example.library.dto.BookDto(b.id, b.title) FROM Book b"
+            + " JOIN b.authors a WHERE LOWER(a.name) = LOWER(:authorName)"
+            + " AND LOWER(a.surname) = LOWER(:authorSurname) ORDER BY b.id")
+    List<BookDto> findBooksByAuthorNameAndSurname(
             @Param("authorName") String authorName,
             @Param("authorSurname") String authorSurname);
-}
\ No newline at end of file
+
+    @Query("SELECT new com.example.library.dto.BookAuthorRow(b.id, a.id, a.name, a.surname)"
+            + " FROM Book b JOIN b.authors a WHERE b.id IN :bookIds ORDER BY a.id")
+    List<BookAuthorRow> findAuthorRows(@Param("bookIds") Collection<Integer> bookIds);
+
+    // Выгрузка всего каталога: строки читаются курсором порциями по fetch size, а не
+    // целиком в память. Поток нужно закрыть и читать внутри транзакции
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.example.library.dto.BookDto(b.id, b.title) FROM Book b ORDER BY b.id")
+    Stream<BookDto> streamAll();
+
+    // Постраничная выборка по ключу: страница начинается сразу после последней отданной
+    // записи, поэтому глубина страницы не влияет на стоимость запроса
+    @Query("SELECT new com.example.library.dto.BookDto(b.id, b.title) FROM Book b"
+            + " WHERE b.id > :afterId ORDER BY b.id")
+    List<BookDto> findPageById(@Param("afterId") int afterId, Limit limit);
+
+    @Query("SELECT new com.example.library.dto.BookDto(b.id, b.title) FROM Book b"
+            + " ORDER BY b.title, b.id")
+    List<BookDto> findFirstPageByTitle(Limit limit);
+
+    // Условие title >= :afterTitle отдельно от OR, чтобы оно стало границей поиска
+    // в индексе (title, id), а не фильтром по всем предыдущим записям
+    @Query("SELECT new com.example.library.dto.BookDto(b.id, b.title) FROM Book b"
+            + " WHERE b.title >= :afterTitle AND (b.title > :afterTitle OR b.id > :afterId)"
+            + " ORDER BY b.title, b.id")
+    List<BookDto> findPageByTitle(@Param("afterTitle") String afterTitle,
+                                  @Param("afterId") int afterId, Limit limit);
+}
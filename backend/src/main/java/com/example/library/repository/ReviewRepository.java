@@ -1,11 +1,21 @@
 package com.example.library.repository;
 
+import com.example.library.dto.BookReviewRow;
 import com.example.library.model.Review;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Integer> {
     List<Review> findByBookId(int bookId);
-}
\ No newline at end of file
+
+    // Отзывы сразу нескольких книг для проекций списков; связь с книгой читается из внешнего
+    // ключа без соединения
+    @Query("SELECT new com.example.library.dto.BookReviewRow(r.book.id, r.id, r.message)"
+            + " FROM Review r WHERE r.book.id IN :bookIds ORDER BY r.id")
+    List<BookReviewRow> findRowsByBookIds(@Param("bookIds") Collection<Integer> bookIds);
+}
@@ -1,5 +1,6 @@
 package com.example.library.service;
 
+import com.example.library.dto.AuthorDto;
 import com.example.library.exception.BadRequestException;
 import com.example.library.exception.ErrorMessages;
 import com.example.library.exception.InvalidProperNameException;
@@ -8,13 +9,18 @@ import com.example.library.model.Author;
 import com.example.library.model.Book;
 import com.example.library.repository.AuthorRepository;
 import com.example.library.repository.BookRepository;
+import com.example.library.util.CacheTag;
 import com.example.library.util.CacheUtil;
+import com.example.library.util.DependencyIndex;
+import com.example.library.util.KeysetPage;
+import com.example.library.util.PageCursor;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,16 +30,23 @@ public class AuthorService {
     private final AuthorRepository authorRepository;
     private final BookRepository bookRepository;
     private final CacheUtil<Integer, Author> authorCacheId;
+    private final DependencyIndex cacheDependencies;
+    private final SuggestService suggestService;
+    private final BulkWriter bulkWriter;
 
     private static final String AUTHOR_ENTITY_NAME = "Author";
 
     @Autowired
     public AuthorService(AuthorRepository authorRepository,
                          BookRepository bookRepository, CacheUtil<Integer,
-                    Author> authorCacheId) {
+                    Author> authorCacheId, DependencyIndex cacheDependencies,
+                         SuggestService suggestService, BulkWriter bulkWriter) {
         this.authorRepository = authorRepository;
         this.bookRepository = bookRepository;
         this.authorCacheId = authorCacheId;
+        this.cacheDependencies = cacheDependencies;
+        this.suggestService = suggestService;
+        this.bulkWriter = bulkWriter;
     }
 
     void validateAuthorName(String name, String fieldName) {
@@ -85,6 +98,8 @@ public class AuthorService {
             book.getAuthors().add(existingAuthor);
             existingAuthor.getBooks().add(book);
             bookRepository.save(book);
+            cacheDependencies.invalidate(
+                    Set.of(CacheTag.author(existingAuthor.getId()), CacheTag.book(bookId)));
             return existingAuthor;
         }
 
@@ -92,7 +107,9 @@ public class AuthorService {
         book.getAuthors().add(author);
 
         Author savedAuthor = authorRepository.save(author);
+        cacheDependencies.invalidate(CacheTag.book(bookId));
         authorCacheId.put(savedAuthor.getId(), savedAuthor);
+        suggestService.authorSaved(savedAuthor);
         return savedAuthor;
     }
 
@@ -100,17 +117,44 @@ public class AuthorService {
         return authorRepository.findAll();
     }
 
+    /**
+     * Страница, отсортированная по id или по surname (при равенстве - по id).
+     * cursor - курсор следующей страницы из предыдущего ответа, null для первой страницы.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<AuthorDto> readPage(String sort, String cursor, int limit,
+                                          boolean withTotal) {
+        int pageSize = KeysetPage.pageSize(limit);
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        Limit rows = Limit.of(pageSize + 1);
+        Long total = withTotal ? authorRepository.count() : null;
+        return switch (sort) {
+            case "id" -> {
+                int afterId = after != null ? after.id() : 0;
+                yield KeysetPage.of(authorRepository.findPageById(afterId, rows),
+                        pageSize, author -> PageCursor.of(author.getId()), total);
+            }
+            case "surname" -> {
+                if (after != null && after.key() == null) {
+                    throw new BadRequestException(ErrorMessages.PAGE_CURSOR_INVALID);
+                }
+                List<AuthorDto> page = after == null
+                        ? authorRepository.findFirstPageBySurname(rows)
+                        : authorRepository.findPageBySurname(after.key(), after.id(), rows);
+                yield KeysetPage.of(page, pageSize,
+                        author -> new PageCursor(author.getSurname(), author.getId()), total);
+            }
+            default -> throw new BadRequestException(
+                    ErrorMessages.PAGE_SORT_INVALID.formatted(sort, "id, surname"));
+        };
+    }
+
     public Author findById(int id) {
-        Author cachedAuthor = authorCacheId.get(id);
-        if (cachedAuthor != null) {
-            return cachedAuthor;
+        Author author = authorCacheId.getOrLoad(id,
+                key -> authorRepository.findWithBookIdsById(key).orElse(null));
+        if (author == null) {
+            throw new ResourceNotFoundException(ErrorMessages.AUTHOR_NOT_FOUND.formatted(id));
         }
-
-        Author author = authorRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        ErrorMessages.AUTHOR_NOT_FOUND.formatted(id)));
-
-        authorCacheId.put(id, author);
         return author;
     }
 
@@ -135,16 +179,23 @@ public class AuthorService {
 
         Author updatedAuthor = authorRepository.save(existingAuthor);
 
-        authorCacheId.put(id, updatedAuthor);
+        // Имя автора входит в закэшированные книги и ответы: они помечены автором.
+        // Сам автор только вытесняется: у сохранённой сущности нет id книг для меток,
+        // и findById загрузит его заново в том же виде, что и при любом промахе
+        cacheDependencies.invalidate(CacheTag.author(id));
+        authorCacheId.evict(id);
+        suggestService.authorSaved(updatedAuthor);
         return updatedAuthor;
     }
 
     @Transactional
     public boolean delete(int authorId) {
-        Author author = authorRepository.findById(authorId)
+        // Метки книг автора нужны до удаления связей
+        Author author = authorRepository.findWithBooksById(authorId)
                 .orElseThrow(() -> new ResourceNotFoundException(
                         ErrorMessages.AUTHOR_NOT_FOUND.formatted(authorId)));
 
+        Set<CacheTag> changed = CacheTag.ofAuthor(authorId, author);
         Set<Book> books = new HashSet<>(author.getBooks());
         for (Book book : books) {
             book.getAuthors().remove(author);
@@ -152,11 +203,13 @@ public class AuthorService {
 
             if (book.getAuthors().isEmpty()) {
                 bookRepository.delete(book);
+                suggestService.bookDeleted(book.getId());
             }
         }
 
         authorRepository.delete(author);
-        authorCacheId.evict(authorId);
+        cacheDependencies.invalidate(changed);
+        suggestService.authorDeleted(authorId);
         return true;
     }
 
@@ -167,46 +220,79 @@ public class AuthorService {
                     .formatted("Authors"));
         }
 
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        ErrorMessages.BOOK_NOT_FOUND.formatted(bookId)));
+        // Авторы, уже связанные с книгой, и добавленные этим вызовом
+        Set<Integer> linkedIds = new HashSet<>();
+        findBook(bookId).getAuthors().forEach(author -> linkedIds.add(author.getId()));
+
+        for (Author author : authors) {
+            if (author == null) {
+                throw new BadRequestException(ErrorMessages.ENTITY_CANNOT_BE_NULL
+                        .formatted(AUTHOR_ENTITY_NAME));
+            }
+            validateAuthorName(author.getName(), "name");
+            validateAuthorName(author.getSurname(), "surname");
 
-        return authors.stream()
-                .peek(author -> {
-                    if (author == null) {
-                        throw new BadRequestException(ErrorMessages.ENTITY_CANNOT_BE_NULL
-                                .formatted(AUTHOR_ENTITY_NAME));
-                    }
-                    validateAuthorName(author.getName(), "name");
-                    validateAuthorName(author.getSurname(), "surname");
-
-                    if (author.getBooks() == null) {
-                        author.setBooks(new ArrayList<>());
-                    }
-                })
-                .map(author -> {
-                    Author existingAuthor = authorRepository.findByNameAndSurname(
-                            author.getName(),
-                            author.getSurname()
-                    );
-
-                    if (existingAuthor != null) {
-                        if (book.getAuthors().contains(existingAuthor)) {
-                            throw new BadRequestException(ErrorMessages.AUTHOR_ALREADY_ASSOCIATED);
-                        }
-                        book.getAuthors().add(existingAuthor);
-                        existingAuthor.getBooks().add(book);
-                        bookRepository.save(book);
-                        return existingAuthor;
-                    } else {
-                        author.getBooks().add(book);
-                        book.getAuthors().add(author);
-                        Author savedAuthor = authorRepository.save(author);
-                        authorCacheId.put(savedAuthor.getId(), savedAuthor);
-                        return savedAuthor;
-                    }
-                })
-                .collect(Collectors.toList());
+            if (author.getBooks() == null) {
+                author.setBooks(new ArrayList<>());
+            }
+        }
+
+        List<Author> savedAuthors = bulkWriter.inChunks(authors,
+                chunk -> createChunk(chunk, bookId, linkedIds));
+        linkAuthors(bookId, savedAuthors);
+
+        cacheDependencies.invalidate(CacheTag.book(bookId));
+        return savedAuthors;
+    }
+
+    // Книга загружается заново для каждой части: после очистки контекста прежний
+    // экземпляр отсоединён. Существующие авторы части ищутся одним запросом.
+    // Список авторов книги здесь не меняется, связи добавляет linkAuthors
+    private List<Author> createChunk(List<Author> authors, int bookId,
+                                     Set<Integer> linkedIds) {
+        Book book = findBook(bookId);
+        Map<List<String>, Author> existingAuthors =
+                authorRepository.findExistingByFullName(authors);
+
+        List<Author> savedAuthors = new ArrayList<>(authors.size());
+        for (Author author : authors) {
+            Author existingAuthor = existingAuthors.get(AuthorRepository.fullName(author));
+            if (existingAuthor != null) {
+                if (!linkedIds.add(existingAuthor.getId())) {
+                    throw new BadRequestException(ErrorMessages.AUTHOR_ALREADY_ASSOCIATED);
+                }
+                existingAuthor.getBooks().add(book);
+                cacheDependencies.invalidate(CacheTag.author(existingAuthor.getId()));
+                savedAuthors.add(existingAuthor);
+            } else {
+                author.getBooks().add(book);
+                Author savedAuthor = authorRepository.save(author);
+                linkedIds.add(savedAuthor.getId());
+                // Без записи в кэш: сериализация вытесняемых авторов тянет за собой книгу
+                // со всеми авторами, а снимается только отметка об отсутствии id
+                authorCacheId.evict(savedAuthor.getId());
+                suggestService.authorSaved(savedAuthor);
+                existingAuthors.put(AuthorRepository.fullName(savedAuthor), savedAuthor);
+                savedAuthors.add(savedAuthor);
+            }
+        }
+        return savedAuthors;
+    }
+
+    // Связи добавляются одним изменением после всех частей: список авторов книги (bag)
+    // Hibernate перезаписывает в book_author целиком при каждом flush, где он изменён,
+    // и добавление по частям давало квадратичное число вставок. Авторы прошлых частей
+    // отсоединены, поэтому в список идут ссылки по id без загрузки
+    private void linkAuthors(int bookId, List<Author> authors) {
+        Book book = findBook(bookId);
+        for (Author author : authors) {
+            book.getAuthors().add(authorRepository.getReferenceById(author.getId()));
+        }
     }
 
-}
\ No newline at end of file
+    private Book findBook(int bookId) {
+        return bookRepository.findById(bookId)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        ErrorMessages.BOOK_NOT_FOUND.formatted(bookId)));
+    }
+}
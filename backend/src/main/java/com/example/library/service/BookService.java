@@ -1,5 +1,10 @@
 package com.example.library.service;
 
+import com.example.library.config.SearchProperties;
+import com.example.library.dto.BookAuthorRow;
+import com.example.library.dto.BookDto;
+import com.example.library.dto.BookReviewRow;
+import com.example.library.dto.BookSearchHit;
 import com.example.library.exception.BadRequestException;
 import com.example.library.exception.ErrorMessages;
 import com.example.library.exception.ResourceNotFoundException;
@@ -9,14 +14,24 @@ import com.example.library.model.Review;
 import com.example.library.repository.AuthorRepository;
 import com.example.library.repository.BookRepository;
 import com.example.library.repository.ReviewRepository;
+import com.example.library.util.CacheTag;
 import com.example.library.util.CacheUtil;
+import com.example.library.util.DependencyIndex;
+import com.example.library.util.KeysetPage;
+import com.example.library.util.PageCursor;
+import com.example.library.util.SearchQuery;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,20 +43,27 @@ public class BookService {
     private final ReviewRepository reviewRepository;
     private final CacheUtil<Integer, Book> bookCacheId;
     private final CacheUtil<Integer, Author> authorCacheId;
-    private final CacheUtil<Integer, List<Review>> reviewCacheId;
+    private final DependencyIndex cacheDependencies;
+    private final SuggestService suggestService;
+    private final SearchProperties.Fuzzy fuzzySearch;
+    private final BulkWriter bulkWriter;
 
     @Autowired
     public BookService(BookRepository bookRepository, AuthorRepository authorRepository,
                        ReviewRepository reviewRepository,
                        CacheUtil<Integer, Book> bookCacheId,
                        CacheUtil<Integer, Author> authorCacheId,
-                       CacheUtil<Integer, List<Review>> reviewCacheId) {
+                       DependencyIndex cacheDependencies, SuggestService suggestService,
+                       SearchProperties searchProperties, BulkWriter bulkWriter) {
         this.bookRepository = bookRepository;
         this.authorRepository = authorRepository;
         this.reviewRepository = reviewRepository;
         this.bookCacheId = bookCacheId;
         this.authorCacheId = authorCacheId;
-        this.reviewCacheId = reviewCacheId;
+        this.cacheDependencies = cacheDependencies;
+        this.suggestService = suggestService;
+        this.fuzzySearch = searchProperties.getFuzzy();
+        this.bulkWriter = bulkWriter;
     }
 
     @Transactional
@@ -80,11 +102,10 @@ public class BookService {
             savedBook.setReviews(savedReviews);
         }
 
-        // Обновляем кэш
-        bookCacheId.put(savedBook.getId(), savedBook);
-        for (Author author : savedBook.getAuthors()) {
-            authorCacheId.put(author.getId(), author);
-        }
+        // Сбрасываем всё, что содержит книгу или её авторов, затем обновляем кэш
+        cacheDependencies.invalidate(CacheTag.ofBook(savedBook.getId(), savedBook));
+        cacheWriteThrough(savedBook);
+        suggestService.bookSaved(savedBook);
 
         return savedBook;
     }
@@ -93,24 +114,83 @@ public class BookService {
         return bookRepository.findAll();
     }
 
+    /**
+     * Страница, отсортированная по id или по title (при равенстве - по id).
+     * cursor - курсор следующей страницы из предыдущего ответа, null для первой страницы.
+     * Авторы и отзывы книг страницы догружаются двумя запросами.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<BookDto> readPage(String sort, String cursor, int limit,
+                                        boolean withTotal) {
+        int pageSize = KeysetPage.pageSize(limit);
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        Limit rows = Limit.of(pageSize + 1);
+        Long total = withTotal ? bookRepository.count() : null;
+        KeysetPage<BookDto> page = switch (sort) {
+            case "id" -> {
+                int afterId = after != null ? after.id() : 0;
+                yield KeysetPage.of(bookRepository.findPageById(afterId, rows),
+                        pageSize, book -> PageCursor.of(book.getId()), total);
+            }
+            case "title" -> {
+                if (after != null && after.key() == null) {
+                    throw new BadRequestException(ErrorMessages.PAGE_CURSOR_INVALID);
+                }
+                List<BookDto> found = after == null
+                        ? bookRepository.findFirstPageByTitle(rows)
+                        : bookRepository.findPageByTitle(after.key(), after.id(), rows);
+                yield KeysetPage.of(found, pageSize,
+                        book -> new PageCursor(book.getTitle(), book.getId()), total);
+            }
+            default -> throw new BadRequestException(
+                    ErrorMessages.PAGE_SORT_INVALID.formatted(sort, "id, title"));
+        };
+        withCollections(page.items());
+        return page;
+    }
+
     public Book findById(int id) {
-        Book cachedBook = bookCacheId.get(id);
-        if (cachedBook != null) {
-            return cachedBook;
+        Book book = bookCacheId.getOrLoad(id,
+                key -> bookRepository.findDetailById(key).orElse(null));
+        if (book == null) {
+            throw new ResourceNotFoundException(ErrorMessages.BOOK_NOT_FOUND.formatted(id));
         }
-
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        ErrorMessages.BOOK_NOT_FOUND.formatted(id)));
-
-        bookCacheId.put(id, book);
         return book;
     }
 
+    @Transactional(readOnly = true)
     public Book findByTitle(String title) {
-        return bookRepository.findByTitle(title).orElseThrow(() ->
+        Book book = bookRepository.findByTitle(title).orElseThrow(() ->
                 new ResourceNotFoundException(
                         ErrorMessages.BOOK_NOT_FOUND.formatted(title)));
+        bookRepository.fetchReviews(List.of(book));
+        return book;
+    }
+
+    /**
+     * Весь каталог частями по chunkSize книг: книги читаются курсором, авторы и отзывы
+     * догружаются двумя запросами на часть. В памяти одновременно не больше одной части,
+     * сущности не создаются, поэтому контекст персистентности не растёт.
+     */
+    @Transactional(readOnly = true)
+    public void forEachChunk(int chunkSize, Consumer<List<BookDto>> consumer) {
+        try (Stream<BookDto> books = bookRepository.streamAll()) {
+            List<BookDto> chunk = new ArrayList<>(chunkSize);
+            Iterator<BookDto> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == chunkSize || !iterator.hasNext()) {
+                    consumer.accept(withCollections(chunk));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+    }
+
+    // Книги автора с их авторами и отзывами: три запроса независимо от числа книг
+    @Transactional(readOnly = true)
+    public List<BookDto> findByAuthor(int authorId) {
+        return withCollections(bookRepository.findByAuthorId(authorId));
     }
 
     @Transactional
@@ -119,7 +199,8 @@ public class BookService {
             throw new BadRequestException(ErrorMessages.ENTITY_CANNOT_BE_NULL.formatted("Book"));
         }
 
-        Book existingBook = bookRepository.findById(id)
+        // Обновлённая книга попадает в кэш, поэтому загружается целиком
+        Book existingBook = bookRepository.findDetailById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(
                         ErrorMessages.BOOK_NOT_FOUND.formatted(id)));
 
@@ -128,6 +209,10 @@ public class BookService {
             existingBook.setTitle(book.getTitle());
         }
 
+        // Прежние авторы зависят от книги, новых добавим по мере привязки
+        Set<CacheTag> changed = new HashSet<>();
+        changed.add(CacheTag.book(id));
+
         // Обновляем авторов (если они переданы)
         if (book.getAuthors() != null) {
             // Очищаем текущих авторов
@@ -146,28 +231,31 @@ public class BookService {
                 updatedAuthors.add(existingAuthor);
                 existingAuthor.getBooks().add(existingBook);
                 authorRepository.save(existingAuthor);
+                changed.add(CacheTag.author(existingAuthor.getId()));
             }
             existingBook.setAuthors(new ArrayList<>(updatedAuthors));
         }
 
         Book updatedBook = bookRepository.save(existingBook);
+        cacheDependencies.invalidate(changed);
         bookCacheId.put(updatedBook.getId(), updatedBook);
+        suggestService.bookSaved(updatedBook);
 
         return updatedBook;
     }
 
     @Transactional
     public boolean delete(int bookId) {
-        Book book = bookRepository.findById(bookId)
+        Book book = bookRepository.findDetailById(bookId)
                 .orElseThrow(() -> new ResourceNotFoundException(
                         ErrorMessages.BOOK_NOT_FOUND.formatted(bookId)));
 
+        // Книга, её отзывы и авторы до удаления связей
+        Set<CacheTag> changed = CacheTag.ofBook(bookId, book);
+
         // Удаление отзывов
         if (book.getReviews() != null) {
             reviewRepository.deleteAll(book.getReviews());
-            for (Review review : book.getReviews()) {
-                reviewCacheId.evict(review.getId());
-            }
         }
 
         if (book.getAuthors() != null) {
@@ -179,36 +267,80 @@ public class BookService {
 
                     if (author.getBooks().isEmpty()) {
                         authorRepository.delete(author);
-                        authorCacheId.evict(author.getId());
+                        suggestService.authorDeleted(author.getId());
                     }
                 }
             }
         }
 
-        bookCacheId.evict(bookId);
         bookRepository.delete(book);
+        cacheDependencies.invalidate(changed);
+        suggestService.bookDeleted(bookId);
 
         return true;
     }
 
-    public List<Book> findBooksByReviewMessageContaining(String keyword) {
-        List<Book> books = bookRepository.findBooksByReviewMessageContaining(keyword);
+    /**
+     * Книги по тексту отзывов, от более релевантных к менее. Синтаксис запроса описан
+     * в SearchQuery; page - номер страницы с нуля.
+     */
+    @Transactional(readOnly = true)
+    public List<BookDto> findBooksByReviewMessageContaining(String keyword, int page,
+                                                            int limit) {
+        int pageSize = KeysetPage.pageSize(limit);
+        long offset = (long) Math.max(page, 0) * pageSize;
+        List<BookDto> books = bookRepository
+                .searchByReviewMessage(SearchQuery.toTsQuery(keyword), pageSize, offset)
+                .stream()
+                .map(BookSearchHit::toDto)
+                .toList();
         if (books.isEmpty()) {
             throw new ResourceNotFoundException(
                     String.format(ErrorMessages.REVIEWS_NOT_FOUND_WITH_KEYWORD, keyword));
         }
-        return books;
+        return withCollections(books);
+    }
+
+    /**
+     * Книги, название или автор которых похожи на query (сходство по триграммам),
+     * от более похожих к менее. Без threshold и limit берутся значения
+     * library.search.fuzzy.
+     */
+    @Transactional(readOnly = true)
+    public List<BookDto> findFuzzy(String query, Double threshold, int page, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException(ErrorMessages.SEARCH_QUERY_EMPTY);
+        }
+        double similarity = threshold != null
+                ? threshold : fuzzySearch.getSimilarityThreshold();
+        if (!(similarity >= 0 && similarity <= 1)) {
+            throw new BadRequestException(ErrorMessages.SEARCH_THRESHOLD_INVALID);
+        }
+        int pageSize = KeysetPage.pageSize(limit != null ? limit : fuzzySearch.getPageSize());
+        long offset = (long) Math.max(page, 0) * pageSize;
+
+        bookRepository.setSimilarityThreshold(similarity);
+        List<BookDto> books = bookRepository.searchFuzzy(query.trim(), pageSize, offset)
+                .stream()
+                .map(BookSearchHit::toDto)
+                .toList();
+        if (books.isEmpty()) {
+            throw new ResourceNotFoundException(
+                    String.format(ErrorMessages.BOOKS_NOT_FOUND_SIMILAR, query));
+        }
+        return withCollections(books);
     }
 
-    public List<Book> findBooksByAuthorNameAndSurnameNative(String authorName,
-                                                            String authorSurname) {
-        List<Book> books = bookRepository.findBooksByAuthorNameAndSurnameNative(authorName,
+    @Transactional(readOnly = true)
+    public List<BookDto> findBooksByAuthorNameAndSurname(String authorName,
+                                                         String authorSurname) {
+        List<BookDto> books = bookRepository.findBooksByAuthorNameAndSurname(authorName,
                 authorSurname);
         if (books.isEmpty()) {
             throw new ResourceNotFoundException(
                     String.format("No books found for author: %s %s", authorName, authorSurname));
         }
-        return books;
+        return withCollections(books);
     }
 
     @Transactional
@@ -218,35 +350,77 @@ public class BookService {
                     .formatted("Books"));
         }
 
-        return books.stream()
-                .peek(book -> {
-                    if (book == null) {
-                        throw new BadRequestException(ErrorMessages.ENTITY_CANNOT_BE_NULL
-                                .formatted("Book"));
-                    }
-                    if (book.getTitle() == null || book.getTitle().trim().isEmpty()) {
-                        throw new BadRequestException(ErrorMessages.BOOK_TITLE_EMPTY);
-                    }
-                    if (book.getAuthors() == null || book.getAuthors().isEmpty()) {
-                        throw new BadRequestException(ErrorMessages.BOOK_AUTHORS_EMPTY);
-                    }
-                })
-                .map(book -> {
-                    Set<Author> authorsToAdd = new HashSet<>();
-                    for (Author author : book.getAuthors()) {
-                        Author existingAuthor = authorRepository
-                                .findByNameAndSurname(author.getName(), author.getSurname());
-                        authorsToAdd.add(Objects.requireNonNullElse(existingAuthor, author));
-                    }
-                    book.setAuthors(new ArrayList<>(authorsToAdd));
-                    Book savedBook = bookRepository.save(book);
-                    bookCacheId.put(savedBook.getId(), savedBook);
-                    for (Author author : savedBook.getAuthors()) {
-                        authorCacheId.put(author.getId(), author);
-                    }
-                    return savedBook;
-                })
-                .collect(Collectors.toList());
+        for (Book book : books) {
+            if (book == null) {
+                throw new BadRequestException(ErrorMessages.ENTITY_CANNOT_BE_NULL
+                        .formatted("Book"));
+            }
+            if (book.getTitle() == null || book.getTitle().trim().isEmpty()) {
+                throw new BadRequestException(ErrorMessages.BOOK_TITLE_EMPTY);
+            }
+            if (book.getAuthors() == null || book.getAuthors().isEmpty()) {
+                throw new BadRequestException(ErrorMessages.BOOK_AUTHORS_EMPTY);
+            }
+        }
+
+        return bulkWriter.inChunks(books, this::createChunk);
+    }
+
+    // Существующие авторы части ищутся одним запросом; новый автор, встретившийся у
+    // нескольких книг части, сохраняется один раз
+    private List<Book> createChunk(List<Book> books) {
+        List<Author> chunkAuthors = new ArrayList<>();
+        books.forEach(book -> chunkAuthors.addAll(book.getAuthors()));
+        Map<List<String>, Author> authorsByName =
+                authorRepository.findExistingByFullName(chunkAuthors);
+
+        List<Book> savedBooks = new ArrayList<>(books.size());
+        for (Book book : books) {
+            Set<Author> authorsToAdd = new HashSet<>();
+            for (Author author : book.getAuthors()) {
+                authorsToAdd.add(authorsByName.computeIfAbsent(
+                        AuthorRepository.fullName(author), name -> author));
+            }
+            book.setAuthors(new ArrayList<>(authorsToAdd));
+            Book savedBook = bookRepository.save(book);
+            // В отличие от create книги в кэш не пишутся: тысячи новых записей вытеснили бы
+            // горячие. Отметки об отсутствии их id снимает инвалидация
+            cacheDependencies.invalidate(CacheTag.ofBook(savedBook.getId(), savedBook));
+            suggestService.bookSaved(savedBook);
+            savedBooks.add(savedBook);
+        }
+        return savedBooks;
+    }
+
+    // Списки книг: авторы и отзывы всех книг догружаются двумя запросами по id,
+    // а не парой запросов на каждую книгу
+    private List<BookDto> withCollections(List<BookDto> books) {
+        if (books.isEmpty()) {
+            return books;
+        }
+        Map<Integer, BookDto> byId = new HashMap<>();
+        for (BookDto book : books) {
+            book.setAuthors(new ArrayList<>());
+            book.setReviews(new ArrayList<>());
+            byId.put(book.getId(), book);
+        }
+        for (BookAuthorRow row : bookRepository.findAuthorRows(byId.keySet())) {
+            byId.get(row.bookId()).getAuthors().add(row.toDto());
+        }
+        for (BookReviewRow row : reviewRepository.findRowsByBookIds(byId.keySet())) {
+            byId.get(row.bookId()).getReviews().add(row.toDto());
+        }
+        return books;
+    }
+
+    // Новая книга кладётся в кэш сразу (в том числе снимается отметка об отсутствии).
+    // Авторы только вытесняются: их списки книг ленивые и не содержат новую книгу,
+    // полный автор загрузится при следующем чтении
+    private void cacheWriteThrough(Book savedBook) {
+        bookCacheId.put(savedBook.getId(), savedBook);
+        for (Author author : savedBook.getAuthors()) {
+            authorCacheId.evict(author.getId());
+        }
     }
 
 }
\ No newline at end of file
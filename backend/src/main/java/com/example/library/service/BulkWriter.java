@@ -0,0 +1,38 @@
+package com.example.library.service;
+
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.springframework.stereotype.Component;
+
+/**
+ * Запись больших списков частями. После каждой части изменения отправляются в базу
+ * пакетами JDBC (hibernate.jdbc.batch_size), а контекст персистентности очищается:
+ * его размер и проверка изменений при flush не растут с длиной списка. Сущности прошлых
+ * частей после очистки отсоединены - каждая часть загружает нужные ей связи заново.
+ * Вызывается внутри транзакции.
+ */
+@Component
+public class BulkWriter {
+
+    // Кратно hibernate.jdbc.batch_size, чтобы последний пакет части не был неполным
+    static final int CHUNK_SIZE = 500;
+
+    private final EntityManager entityManager;
+
+    public BulkWriter(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public <T, R> List<R> inChunks(List<T> items, Function<List<T>, List<R>> writeChunk) {
+        List<R> written = new ArrayList<>(items.size());
+        for (int from = 0; from < items.size(); from += CHUNK_SIZE) {
+            List<T> chunk = items.subList(from, Math.min(items.size(), from + CHUNK_SIZE));
+            written.addAll(writeChunk.apply(chunk));
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return written;
+    }
+}
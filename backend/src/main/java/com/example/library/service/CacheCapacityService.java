@@ -0,0 +1,199 @@
+package com.example.library.service;
+
+import com.example.library.config.CacheProperties;
+import com.example.library.util.CacheStats;
+import com.example.library.util.CacheUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Подстраивает бюджеты изменяемых кэшей под заполненность кучи. Источник - пул старого
+ * поколения: при превышении порога после сборки мусора JVM присылает уведомление,
+ * и кэши сразу сжимаются. Периодическая проверка сжимает кэши при высокой
+ * заполненности, а при свободной памяти увеличивает те, которым рост даст больше
+ * попаданий: оценка - доля промахов по ключам, недавно вытесненным из кэша.
+ */
+@Service
+public class CacheCapacityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheCapacityService.class);
+
+    private final List<CacheUtil<Integer, ?>> caches = new ArrayList<>();
+    private final CacheProperties.Adaptive adaptive;
+    private final MemoryPoolMXBean oldGen;
+    // Счётчики на момент прошлой проверки, по индексу кэша; меняются только в планировщике
+    private final long[] lastGhostHits;
+    private final long[] lastRequests;
+    private ScheduledExecutorService scheduler;
+    private NotificationListener pressureListener;
+
+    @Autowired
+    public CacheCapacityService(List<CacheUtil<Integer, ?>> caches,
+                                CacheProperties cacheProperties) {
+        this(caches, cacheProperties, findOldGen());
+    }
+
+    CacheCapacityService(List<CacheUtil<Integer, ?>> caches, CacheProperties cacheProperties,
+                         MemoryPoolMXBean oldGen) {
+        for (CacheUtil<Integer, ?> cache : caches) {
+            if (cache.isResizable()) {
+                this.caches.add(cache);
+            }
+        }
+        this.adaptive = cacheProperties.getAdaptive();
+        this.oldGen = oldGen;
+        this.lastGhostHits = new long[this.caches.size()];
+        this.lastRequests = new long[this.caches.size()];
+        sample();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!adaptive.isEnabled() || caches.isEmpty()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-capacity");
+            thread.setDaemon(true);
+            return thread;
+        });
+        listenForPressure();
+        long intervalMillis = Math.max(1, adaptive.getInterval().toMillis());
+        scheduler.scheduleWithFixedDelay(this::adjustQuietly, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pressureListener != null) {
+            try {
+                ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+                        .removeNotificationListener(pressureListener);
+            } catch (ListenerNotFoundException e) {
+                logger.debug("Слушатель заполненности памяти уже снят");
+            }
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // Порог проверяется JVM после каждой сборки старого поколения
+    private void listenForPressure() {
+        if (oldGen == null || !oldGen.isCollectionUsageThresholdSupported()) {
+            logger.info("Пул старого поколения не найден, бюджеты кэшей меняются по таймеру");
+            return;
+        }
+        long max = oldGen.getUsage().getMax();
+        if (max <= 0) {
+            return;
+        }
+        oldGen.setCollectionUsageThreshold((long) (max * adaptive.getHighUsage()));
+        pressureListener = (notification, handback) -> {
+            if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED
+                    .equals(notification.getType())) {
+                scheduler.execute(this::shed);
+            }
+        };
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+                .addNotificationListener(pressureListener, null, null);
+        logger.info("Бюджеты кэшей следят за пулом {}: порог {}%", oldGen.getName(),
+                Math.round(adaptive.getHighUsage() * 100));
+    }
+
+    private void adjustQuietly() {
+        try {
+            adjust(heapUsage());
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось изменить бюджеты кэшей: {}", e.getMessage());
+        }
+    }
+
+    void adjust(double usage) {
+        double[] gains = sample();
+        if (usage >= adaptive.getHighUsage()) {
+            shed();
+            return;
+        }
+        if (usage >= adaptive.getLowUsage()) {
+            return;
+        }
+
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < caches.size(); i++) {
+            if (gains[i] >= adaptive.getMinGain()) {
+                candidates.add(i);
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(i -> -gains[i]));
+        for (int i : candidates) {
+            CacheUtil<Integer, ?> cache = caches.get(i);
+            long grown = (long) Math.ceil(cache.maximumWeight() * adaptive.getGrowFactor());
+            cache.resize(grown);
+            logger.debug("Кэш {}: ожидаемый прирост попаданий {}%", cache.name(),
+                    Math.round(gains[i] * 100));
+        }
+    }
+
+    void shed() {
+        for (CacheUtil<Integer, ?> cache : caches) {
+            cache.resize((long) (cache.maximumWeight() * adaptive.getShrinkFactor()));
+        }
+        logger.warn("Память старого поколения на исходе: бюджеты кэшей уменьшены");
+    }
+
+    // Для каждого кэша: доля запросов с прошлой проверки, которые попали бы в кэш вдвое больше
+    private double[] sample() {
+        double[] gains = new double[caches.size()];
+        for (int i = 0; i < caches.size(); i++) {
+            CacheUtil<Integer, ?> cache = caches.get(i);
+            CacheStats stats = cache.stats();
+            long ghostHits = cache.ghostHitCount();
+            long requests = stats.requestCount();
+            long requestDelta = requests - lastRequests[i];
+            gains[i] = requestDelta > 0
+                    ? (double) (ghostHits - lastGhostHits[i]) / requestDelta
+                    : 0;
+            lastGhostHits[i] = ghostHits;
+            lastRequests[i] = requests;
+        }
+        return gains;
+    }
+
+    // Заполненность после последней сборки: без мусора, который ещё не собран
+    private double heapUsage() {
+        MemoryUsage usage = oldGen != null ? oldGen.getCollectionUsage() : null;
+        if (usage != null && usage.getMax() > 0) {
+            return (double) usage.getUsed() / usage.getMax();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+    }
+
+    private static MemoryPoolMXBean findOldGen() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP
+                        && pool.isUsageThresholdSupported()
+                        && pool.isCollectionUsageThresholdSupported())
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.library.service;
+
+import com.example.library.config.CacheProperties;
+import com.example.library.util.CacheTag;
+import com.example.library.util.CacheUtil;
+import com.example.library.util.DependencyIndex;
+import com.example.library.util.InvalidationListener;
+import com.example.library.util.InvalidationMessage;
+import com.example.library.util.InvalidationTransport;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Рассылает явные изменения кэшей (put, evict, clear) другим экземплярам приложения
+ * и применяет полученные от них сообщения. Изменения внутри транзакции отправляются
+ * только после её фиксации; накопленные ключи объединяются и уходят пакетом
+ * раз в flushInterval. Инвалидации меток зависимостей рассылаются так же: у другого
+ * экземпляра могут быть закэшированы другие записи с теми же метками.
+ */
+@Service
+public class CacheInvalidationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationService.class);
+
+    private final InvalidationTransport transport;
+    private final DependencyIndex dependencies;
+    private final ObjectMapper objectMapper;
+    private final Duration flushInterval;
+    private final Map<String, CacheUtil<Integer, ?>> caches = new HashMap<>();
+    private final String nodeId = UUID.randomUUID().toString();
+    // Отмечает поток, применяющий чужое сообщение: такие изменения не рассылаются повторно
+    private final ThreadLocal<Boolean> applyingRemote = new ThreadLocal<>();
+    private final Object lock = new Object();
+    private PendingInvalidations pending = new PendingInvalidations();
+    private ScheduledExecutorService flusher;
+
+    public CacheInvalidationService(InvalidationTransport transport, ObjectMapper objectMapper,
+                                    CacheProperties cacheProperties,
+                                    List<CacheUtil<Integer, ?>> caches,
+                                    DependencyIndex dependencies) {
+        this.transport = transport;
+        this.dependencies = dependencies;
+        this.objectMapper = objectMapper;
+        this.flushInterval = cacheProperties.getInvalidation().getFlushInterval();
+
+        List<String> synchronizedCaches = cacheProperties.getInvalidation().getCaches();
+        for (CacheUtil<Integer, ?> cache : caches) {
+            if (synchronizedCaches.contains(cache.name())) {
+                this.caches.put(cache.name(), cache);
+                cache.addInvalidationListener(new PublishingListener(cache.name()));
+            }
+        }
+        dependencies.addListener(tags ->
+                tags.forEach(tag -> record(batch -> batch.addTag(tag.toString()))));
+    }
+
+    @PostConstruct
+    public void start() {
+        transport.subscribe(this::apply, this::clearAll);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, flushInterval.toMillis());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flushQuietly();
+    }
+
+    void flush() {
+        PendingInvalidations batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new PendingInvalidations();
+        }
+
+        String payload = serialize(batch);
+        if (payload.getBytes(StandardCharsets.UTF_8).length > transport.maxPayloadBytes()) {
+            // Слишком много ключей для одного сообщения: проще очистить кэши целиком
+            batch.clearAllKeys(caches.keySet());
+            payload = serialize(batch);
+        }
+        transport.publish(payload);
+        logger.debug("Отправлен пакет инвалидации кэшей: {}", payload);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Не удалось отправить пакет инвалидации кэшей: {}", e.getMessage(), e);
+        }
+    }
+
+    void apply(String payload) {
+        InvalidationMessage message;
+        try {
+            message = objectMapper.readValue(payload, InvalidationMessage.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("Некорректное сообщение об инвалидации кэша: {}", payload);
+            return;
+        }
+        if (nodeId.equals(message.origin())) {
+            return;
+        }
+
+        applyingRemote.set(Boolean.TRUE);
+        try {
+            if (message.tags() != null && !message.tags().isEmpty()) {
+                dependencies.invalidate(message.tags().stream().map(CacheTag::parse).toList());
+            }
+            for (String name : message.cleared()) {
+                CacheUtil<Integer, ?> cache = caches.get(name);
+                if (cache != null) {
+                    cache.clear();
+                }
+            }
+            message.keys().forEach((name, keys) -> {
+                CacheUtil<Integer, ?> cache = caches.get(name);
+                if (cache != null) {
+                    keys.forEach(cache::evict);
+                }
+            });
+        } finally {
+            applyingRemote.remove();
+        }
+        logger.debug("Применён пакет инвалидации кэшей от узла {}", message.origin());
+    }
+
+    // Сообщения могли быть потеряны: локальным данным больше нельзя доверять
+    private void clearAll() {
+        applyingRemote.set(Boolean.TRUE);
+        try {
+            caches.values().forEach(CacheUtil::clear);
+        } finally {
+            applyingRemote.remove();
+        }
+    }
+
+    private void record(String cacheName, Integer key) {
+        record(batch -> batch.add(cacheName, key));
+    }
+
+    private void record(Consumer<PendingInvalidations> change) {
+        if (applyingRemote.get() != null) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            synchronized (lock) {
+                change.accept(pending);
+            }
+            return;
+        }
+
+        PendingInvalidations transactional =
+                (PendingInvalidations) TransactionSynchronizationManager.getResource(this);
+        if (transactional == null) {
+            PendingInvalidations buffer = new PendingInvalidations();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(int status) {
+                            TransactionSynchronizationManager.unbindResourceIfPossible(
+                                    CacheInvalidationService.this);
+                            if (status == STATUS_COMMITTED) {
+                                synchronized (lock) {
+                                    pending.addAll(buffer);
+                                }
+                            }
+                        }
+                    });
+            transactional = buffer;
+        }
+        change.accept(transactional);
+    }
+
+    private String serialize(PendingInvalidations batch) {
+        try {
+            return objectMapper.writeValueAsString(
+                    new InvalidationMessage(nodeId, batch.keys, batch.cleared, batch.tags));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize invalidation message", e);
+        }
+    }
+
+    private final class PublishingListener implements InvalidationListener<Integer> {
+        private final String cacheName;
+
+        private PublishingListener(String cacheName) {
+            this.cacheName = cacheName;
+        }
+
+        @Override
+        public void onInvalidate(Integer key) {
+            record(cacheName, key);
+        }
+
+        @Override
+        public void onInvalidateAll() {
+            record(cacheName, null);
+        }
+    }
+
+    // Накопленные изменения; повторы ключей схлопываются, очистка кэша поглощает его ключи
+    private static final class PendingInvalidations {
+        private final Map<String, Set<Integer>> keys = new HashMap<>();
+        private final Set<String> cleared = new HashSet<>();
+        private final Set<String> tags = new HashSet<>();
+
+        // key == null означает очистку всего кэша
+        void add(String cacheName, Integer key) {
+            if (key == null) {
+                cleared.add(cacheName);
+                keys.remove(cacheName);
+            } else if (!cleared.contains(cacheName)) {
+                keys.computeIfAbsent(cacheName, name -> new HashSet<>()).add(key);
+            }
+        }
+
+        void addTag(String tag) {
+            tags.add(tag);
+        }
+
+        void addAll(PendingInvalidations other) {
+            other.cleared.forEach(cacheName -> add(cacheName, null));
+            other.keys.forEach((cacheName, cacheKeys) ->
+                    cacheKeys.forEach(key -> add(cacheName, key)));
+            tags.addAll(other.tags);
+        }
+
+        // Метки нельзя свести к ключам получателя, поэтому тогда очищаются все кэши
+        void clearAllKeys(Set<String> allCaches) {
+            cleared.addAll(keys.keySet());
+            keys.clear();
+            if (!tags.isEmpty()) {
+                cleared.addAll(allCaches);
+                tags.clear();
+            }
+        }
+
+        boolean isEmpty() {
+            return keys.isEmpty() && cleared.isEmpty() && tags.isEmpty();
+        }
+    }
+}
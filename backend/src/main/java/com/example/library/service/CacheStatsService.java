@@ -0,0 +1,77 @@
+package com.example.library.service;
+
+import com.example.library.dto.CacheRegionStatsDto;
+import com.example.library.dto.CacheStatsDto;
+import com.example.library.util.CacheStats;
+import com.example.library.util.CacheUtil;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+@Service
+public class CacheStatsService {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final List<CacheUtil<?, ?>> caches;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public CacheStatsService(List<CacheUtil<?, ?>> caches,
+                             EntityManagerFactory entityManagerFactory) {
+        this.caches = caches;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public List<CacheStatsDto> getAllStats() {
+        return caches.stream()
+                .sorted(Comparator.comparing(CacheUtil::name))
+                .map(CacheStatsService::toDto)
+                .toList();
+    }
+
+    // Регионы кэша второго уровня и кэша запросов Hibernate
+    public List<CacheRegionStatsDto> getRegionStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(region -> toDto(region, statistics.getCacheRegionStatistics(region)))
+                .toList();
+    }
+
+    private static CacheRegionStatsDto toDto(String region, CacheRegionStatistics stats) {
+        long requests = stats.getHitCount() + stats.getMissCount();
+        return new CacheRegionStatsDto(
+                region,
+                stats.getHitCount(),
+                stats.getMissCount(),
+                stats.getPutCount(),
+                requests == 0 ? 0.0 : (double) stats.getHitCount() / requests);
+    }
+
+    private static CacheStatsDto toDto(CacheUtil<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new CacheStatsDto(
+                cache.name(),
+                cache.size(),
+                cache.weightedSize(),
+                cache.maximumWeight(),
+                cache.estimatedFootprint(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRatio(),
+                stats.evictionCount(),
+                stats.expirationCount(),
+                stats.loadSuccessCount(),
+                stats.loadFailureCount(),
+                stats.averageLoadPenaltyNanos() / NANOS_PER_MILLI,
+                cache.offHeapSize(),
+                cache.offHeapUsedBytes(),
+                cache.offHeapMaximumBytes(),
+                cache.offHeapEvictionCount());
+    }
+}
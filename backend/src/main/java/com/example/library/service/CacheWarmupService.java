@@ -0,0 +1,255 @@
+package com.example.library.service;
+
+import com.example.library.config.CacheProperties;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.util.CacheUtil;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+
+/**
+ * Прогрев кэшей книг и авторов после перезапуска. Популярность id берётся из счётчиков
+ * посещений GET /books/{id} и /authors/{id} и периодически сохраняется в файл.
+ * При старте сохранённые id загружаются пакетами тем же планом выборки, что и при
+ * чтении, до того, как приложение сообщит о готовности; прогрев ограничен по времени.
+ */
+@Service
+public class CacheWarmupService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmupService.class);
+
+    private static final Pattern BOOK_URL = Pattern.compile("/books/(\\d+)");
+    private static final Pattern AUTHOR_URL = Pattern.compile("/authors/(\\d+)");
+    // Вклад популярности из прошлых запусков: старые данные постепенно забываются
+    private static final double PREVIOUS_SCORE_WEIGHT = 0.5;
+
+    private final VisitCounterService visitCounterService;
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final CacheUtil<Integer, Book> bookCacheId;
+    private final CacheUtil<Integer, Author> authorCacheId;
+    private final ObjectMapper objectMapper;
+    private final CacheProperties.Warmup warmup;
+    private volatile HotKeys previous = HotKeys.EMPTY;
+    private ScheduledExecutorService persister;
+
+    public CacheWarmupService(VisitCounterService visitCounterService,
+                              BookRepository bookRepository, AuthorRepository authorRepository,
+                              CacheUtil<Integer, Book> bookCacheId,
+                              CacheUtil<Integer, Author> authorCacheId,
+                              ObjectMapper objectMapper, CacheProperties cacheProperties) {
+        this.visitCounterService = visitCounterService;
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.bookCacheId = bookCacheId;
+        this.authorCacheId = authorCacheId;
+        this.objectMapper = objectMapper;
+        this.warmup = cacheProperties.getWarmup();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!warmup.isEnabled()) {
+            return;
+        }
+        previous = readHotKeys();
+        warmUp(previous);
+
+        persister = Executors.newSingleThreadScheduledExecutor(
+                runnable -> daemon(runnable, "cache-hot-keys-persister"));
+        long intervalMillis = Math.max(1, warmup.getPersistInterval().toMillis());
+        persister.scheduleWithFixedDelay(this::persistQuietly, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (persister != null) {
+            persister.shutdown();
+            persistQuietly();
+        }
+    }
+
+    void warmUp(HotKeys hotKeys) {
+        if (hotKeys.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + warmup.getTimeout().toNanos();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, warmup.getParallelism()),
+                runnable -> daemon(runnable, "cache-warmup-" + threadNumber.incrementAndGet()));
+
+        List<Future<Integer>> batches = new ArrayList<>();
+        submitBatches(executor, batches, hotKeys.books().keySet(),
+                bookRepository::findDetailByIdIn, bookCacheId, Book::getId);
+        submitBatches(executor, batches, hotKeys.authors().keySet(),
+                authorRepository::findWithBookIdsByIdIn, authorCacheId, Author::getId);
+        executor.shutdown();
+
+        int loaded = 0;
+        try {
+            for (Future<Integer> batch : batches) {
+                loaded += batch.get(Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS);
+            }
+            logger.info("Кэши прогреты: загружено {} записей за {} мс", loaded,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (TimeoutException e) {
+            logger.warn("Прогрев кэшей прерван по таймауту {}: загружено {} записей",
+                    warmup.getTimeout(), loaded);
+        } catch (ExecutionException e) {
+            logger.warn("Прогрев кэшей прерван из-за ошибки: {}", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> void submitBatches(ExecutorService executor, List<Future<Integer>> batches,
+                                   Iterable<Integer> ids, Function<List<Integer>, List<T>> loader,
+                                   CacheUtil<Integer, T> cache, Function<T, Integer> idOf) {
+        List<Integer> batch = new ArrayList<>(warmup.getBatchSize());
+        for (Integer id : ids) {
+            batch.add(id);
+            if (batch.size() == warmup.getBatchSize()) {
+                batches.add(executor.submit(loadBatch(batch, loader, cache, idOf)));
+                batch = new ArrayList<>(warmup.getBatchSize());
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(executor.submit(loadBatch(batch, loader, cache, idOf)));
+        }
+    }
+
+    // Отметки инвалидаций снимаются до запроса: запись, изменённая во время прогрева,
+    // не попадёт в кэш в прежнем виде. Загрузчик - пакетная форма загрузчика кэша
+    // на чтении: запись без догруженных связей сломала бы ответ из кэша
+    private static <T> Callable<Integer> loadBatch(
+            List<Integer> ids, Function<List<Integer>, List<T>> loader,
+            CacheUtil<Integer, T> cache, Function<T, Integer> idOf) {
+        return () -> cache.preload(ids, batch -> {
+            Map<Integer, T> found = new HashMap<>();
+            loader.apply(batch).forEach(entity -> found.put(idOf.apply(entity), entity));
+            return found;
+        });
+    }
+
+    // Текущая популярность: счётчики посещений плюс ослабленный вклад прошлых запусков
+    HotKeys collectHotKeys() {
+        Map<Integer, Double> books = decayed(previous.books());
+        Map<Integer, Double> authors = decayed(previous.authors());
+        visitCounterService.getAllCounters().forEach((url, count) -> {
+            addVisits(books, BOOK_URL.matcher(url), count);
+            addVisits(authors, AUTHOR_URL.matcher(url), count);
+        });
+        return new HotKeys(top(books), top(authors));
+    }
+
+    void persist() throws IOException {
+        HotKeys hotKeys = collectHotKeys();
+        Path file = warmup.getFile().toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), hotKeys);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        logger.debug("Сохранены популярные id: книг {}, авторов {}",
+                hotKeys.books().size(), hotKeys.authors().size());
+    }
+
+    private void persistQuietly() {
+        try {
+            persist();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Не удалось сохранить популярные id: {}", e.getMessage());
+        }
+    }
+
+    HotKeys readHotKeys() {
+        Path file = warmup.getFile();
+        if (!Files.isRegularFile(file)) {
+            return HotKeys.EMPTY;
+        }
+        try {
+            HotKeys hotKeys = objectMapper.readValue(file.toFile(), HotKeys.class);
+            return hotKeys.books() == null || hotKeys.authors() == null
+                    ? HotKeys.EMPTY : hotKeys;
+        } catch (IOException e) {
+            logger.warn("Не удалось прочитать популярные id из {}: {}", file, e.getMessage());
+            return HotKeys.EMPTY;
+        }
+    }
+
+    private static Map<Integer, Double> decayed(Map<Integer, Double> scores) {
+        Map<Integer, Double> result = new HashMap<>();
+        scores.forEach((id, score) -> result.put(id, score * PREVIOUS_SCORE_WEIGHT));
+        return result;
+    }
+
+    private static void addVisits(Map<Integer, Double> scores, Matcher matcher, int count) {
+        if (matcher.matches()) {
+            scores.merge(Integer.valueOf(matcher.group(1)), (double) count, Double::sum);
+        }
+    }
+
+    private Map<Integer, Double> top(Map<Integer, Double> scores) {
+        Map<Integer, Double> result = new LinkedHashMap<>();
+        scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
+                .limit(warmup.getMaxKeys())
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // Популярность id по убыванию
+    record HotKeys(Map<Integer, Double> books, Map<Integer, Double> authors) {
+        static final HotKeys EMPTY = new HotKeys(Map.of(), Map.of());
+
+        @JsonIgnore
+        boolean isEmpty() {
+            return books.isEmpty() && authors.isEmpty();
+        }
+    }
+}
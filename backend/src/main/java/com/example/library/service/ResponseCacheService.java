@@ -0,0 +1,80 @@
+package com.example.library.service;
+
+import com.example.library.config.CacheProperties;
+import com.example.library.exception.InternalServerErrorException;
+import com.example.library.mapper.AuthorMapper;
+import com.example.library.mapper.BookMapper;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.util.CacheTag;
+import com.example.library.util.CacheUtil;
+import com.example.library.util.InvalidationListener;
+import com.example.library.util.RenderedResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+/**
+ * Кэш готовых JSON-ответов для GET /books/{id} и GET /authors/{id}.
+ * Записи сбрасываются вместе с кэшами сущностей, а также по меткам вложенных
+ * сущностей, даже если сама сущность уже вытеснена из своего кэша.
+ */
+@Service
+public class ResponseCacheService {
+
+    private final BookService bookService;
+    private final AuthorService authorService;
+    private final BookMapper bookMapper;
+    private final AuthorMapper authorMapper;
+    private final ObjectMapper objectMapper;
+    private final CacheUtil<Integer, RenderedResponse> bookResponseCache;
+    private final CacheUtil<Integer, RenderedResponse> authorResponseCache;
+    private final int gzipMinSize;
+
+    public ResponseCacheService(BookService bookService, AuthorService authorService,
+                                BookMapper bookMapper, AuthorMapper authorMapper,
+                                ObjectMapper objectMapper, CacheProperties cacheProperties,
+                                CacheUtil<Integer, Book> bookCacheId,
+                                CacheUtil<Integer, Author> authorCacheId,
+                                @Qualifier("bookResponseCache")
+                                CacheUtil<Integer, RenderedResponse> bookResponseCache,
+                                @Qualifier("authorResponseCache")
+                                CacheUtil<Integer, RenderedResponse> authorResponseCache) {
+        this.bookService = bookService;
+        this.authorService = authorService;
+        this.bookMapper = bookMapper;
+        this.authorMapper = authorMapper;
+        this.objectMapper = objectMapper;
+        this.bookResponseCache = bookResponseCache;
+        this.authorResponseCache = authorResponseCache;
+        this.gzipMinSize = (int) Math.min(Integer.MAX_VALUE,
+                cacheProperties.getResponses().getGzipMinSize().toBytes());
+
+        bookCacheId.addInvalidationListener(InvalidationListener.evicting(bookResponseCache));
+        authorCacheId.addInvalidationListener(InvalidationListener.evicting(authorResponseCache));
+    }
+
+    public RenderedResponse getBook(int id) {
+        return bookResponseCache.getOrLoad(id, key -> {
+            Book book = bookService.findById(key);
+            return render(bookMapper.toDto(book), CacheTag.ofBook(key, book));
+        });
+    }
+
+    public RenderedResponse getAuthor(int id) {
+        return authorResponseCache.getOrLoad(id, key -> {
+            Author author = authorService.findById(key);
+            return render(authorMapper.toDto(author), CacheTag.ofAuthor(key, author));
+        });
+    }
+
+    private RenderedResponse render(Object dto, Set<CacheTag> tags) {
+        try {
+            return RenderedResponse.of(objectMapper.writeValueAsBytes(dto), gzipMinSize, tags);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerErrorException("Failed to serialize response", e);
+        }
+    }
+}
@@ -7,9 +7,11 @@ import com.example.library.model.Book;
 import com.example.library.model.Review;
 import com.example.library.repository.BookRepository;
 import com.example.library.repository.ReviewRepository;
+import com.example.library.util.CacheTag;
 import com.example.library.util.CacheUtil;
+import com.example.library.util.DependencyIndex;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,17 +23,23 @@ public class ReviewService {
     private final BookRepository bookRepository;
     private final CacheUtil<Integer, List<Review>> reviewCacheId;
     private final CacheUtil<Integer, Book> bookCacheId;
+    private final DependencyIndex cacheDependencies;
+    private final BulkWriter bulkWriter;
 
     private static final String REVIEW_ENTITY_NAME = "Review";
+    private static final String NO_REVIEWS_FOR_BOOK = "No reviews found for book with id: ";
 
     @Autowired
     public ReviewService(ReviewRepository reviewRepository, BookRepository bookRepository,
                          CacheUtil<Integer, List<Review>> reviewCacheId,
-                         CacheUtil<Integer, Book> bookCacheId) {
+                         CacheUtil<Integer, Book> bookCacheId,
+                         DependencyIndex cacheDependencies, BulkWriter bulkWriter) {
         this.reviewRepository = reviewRepository;
         this.bookRepository = bookRepository;
         this.reviewCacheId = reviewCacheId;
         this.bookCacheId = bookCacheId;
+        this.cacheDependencies = cacheDependencies;
+        this.bulkWriter = bulkWriter;
     }
 
     @Transactional
@@ -51,31 +59,36 @@ public class ReviewService {
         review.setBook(book);
         Review savedReview = reviewRepository.save(review);
 
-        // Only evict caches once
-        reviewCacheId.evict(bookId);
-        bookCacheId.evict(bookId);
+        // Отзывы входят в книгу, её список отзывов и авторов с этой книгой
+        cacheDependencies.invalidate(CacheTag.book(bookId));
 
         return savedReview;
     }
 
     public List<Review> getReviewsByBookId(int bookId) {
-        if (!bookRepository.existsById(bookId)) {
+        if (bookCacheId.isAbsent(bookId)) {
             throw new ResourceNotFoundException(ErrorMessages.BOOK_NOT_FOUND.formatted(bookId));
         }
 
-        List<Review> cachedReviews = reviewCacheId.get(bookId);
-        if (cachedReviews != null) {
-            return cachedReviews;
+        List<Review> reviews = reviewCacheId.getOrLoad(bookId, this::loadReviews);
+        if (reviews == null) {
+            throw new ResourceNotFoundException(NO_REVIEWS_FOR_BOOK + bookId);
         }
+        return reviews;
+    }
 
+    private List<Review> loadReviews(int bookId) {
         List<Review> reviews = reviewRepository.findByBookId(bookId);
-
-        if (reviews.isEmpty()) {
-            throw new ResourceNotFoundException("No reviews found for book with id: " + bookId);
+        if (!reviews.isEmpty()) {
+            return reviews;
         }
 
-        reviewCacheId.put(bookId, reviews);
-        return reviews;
+        // Пустой список: отличаем книгу без отзывов от несуществующей книги
+        if (!bookRepository.existsById(bookId)) {
+            bookCacheId.markAbsent(bookId);
+            throw new ResourceNotFoundException(ErrorMessages.BOOK_NOT_FOUND.formatted(bookId));
+        }
+        return null;
     }
 
     public Review getReviewById(int id) {
@@ -98,8 +111,7 @@ public class ReviewService {
         existingReview.setMessage(review.getMessage());
         Review updatedReview = reviewRepository.save(existingReview);
 
-        reviewCacheId.evict(existingReview.getBook().getId());
-        bookCacheId.evict(existingReview.getBook().getId());
+        cacheDependencies.invalidate(CacheTag.book(existingReview.getBook().getId()));
 
         return updatedReview;
     }
@@ -113,8 +125,7 @@ public class ReviewService {
         int bookId = review.getBook().getId();
         reviewRepository.delete(review);
 
-        reviewCacheId.evict(bookId);
-        bookCacheId.evict(bookId);
+        cacheDependencies.invalidate(CacheTag.book(bookId));
     }
 
     @Transactional
@@ -128,21 +139,30 @@ public class ReviewService {
                 .orElseThrow(() -> new ResourceNotFoundException(
                         ErrorMessages.BOOK_NOT_FOUND.formatted(bookId)));
 
-        return reviews.stream()
-                .peek(review -> {
-                    if (review == null) {
-                        throw new BadRequestException(ErrorMessages.ENTITY_CANNOT_BE_NULL
-                                .formatted(REVIEW_ENTITY_NAME));
-                    }
-                    if (review.getMessage() == null || review.getMessage().trim().isEmpty()) {
-                        throw new BadRequestException(ErrorMessages.REVIEW_MESSAGE_EMPTY);
-                    }
-                })
-                .map(review -> {
-                    review.setBook(book);
-                    return reviewRepository.save(review);
-                })
-                .collect(Collectors.toList());
+        for (Review review : reviews) {
+            if (review == null) {
+                throw new BadRequestException(ErrorMessages.ENTITY_CANNOT_BE_NULL
+                        .formatted(REVIEW_ENTITY_NAME));
+            }
+            if (review.getMessage() == null || review.getMessage().trim().isEmpty()) {
+                throw new BadRequestException(ErrorMessages.REVIEW_MESSAGE_EMPTY);
+            }
+        }
+
+        // После очистки контекста книга отсоединена, но для внешнего ключа отзыва нужен
+        // только её id
+        List<Review> savedReviews = bulkWriter.inChunks(reviews, chunk -> {
+            List<Review> saved = new ArrayList<>(chunk.size());
+            for (Review review : chunk) {
+                review.setBook(book);
+                saved.add(reviewRepository.save(review));
+            }
+            return saved;
+        });
+
+        cacheDependencies.invalidate(CacheTag.book(bookId));
+
+        return savedReviews;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package com.example.library.service;
+
+import com.example.library.dto.AuthorDto;
+import com.example.library.dto.BookDto;
+import com.example.library.dto.SuggestionDto;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.util.CacheTransactions;
+import com.example.library.util.PrefixIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Подсказки для строки поиска по названиям книг и именам авторов. Индекс в памяти
+ * строится при старте и обновляется после фиксации транзакций, изменивших книги
+ * и авторов, поэтому ответ не требует обращения к базе. Изменения, сделанные другими
+ * экземплярами приложения, попадают в индекс только при их перезапуске.
+ */
+@Service
+public class SuggestService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuggestService.class);
+
+    public static final int MAX_LIMIT = 50;
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final PrefixIndex index = new PrefixIndex();
+
+    public SuggestService(BookRepository bookRepository, AuthorRepository authorRepository) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void run(ApplicationArguments args) {
+        long started = System.nanoTime();
+        index.clear();
+        try (Stream<BookDto> books = bookRepository.streamAll()) {
+            books.forEach(book -> index.put(SuggestionDto.book(book.getId(), book.getTitle())));
+        }
+        try (Stream<AuthorDto> authors = authorRepository.streamAll()) {
+            authors.forEach(author -> index.put(SuggestionDto.author(author.getId(),
+                    author.getName(), author.getSurname())));
+        }
+        logger.info("Индекс подсказок построен: {} записей за {} мс", index.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        return index.find(prefix, Math.min(limit, MAX_LIMIT));
+    }
+
+    // Книга вместе с её авторами, если они загружены
+    public void bookSaved(Book book) {
+        List<SuggestionDto> changed = new ArrayList<>();
+        changed.add(SuggestionDto.book(book.getId(), book.getTitle()));
+        if (book.getAuthors() != null && Hibernate.isInitialized(book.getAuthors())) {
+            book.getAuthors().forEach(author -> changed.add(toSuggestion(author)));
+        }
+        CacheTransactions.afterCommit(() -> changed.forEach(index::put));
+    }
+
+    public void authorSaved(Author author) {
+        SuggestionDto suggestion = toSuggestion(author);
+        CacheTransactions.afterCommit(() -> index.put(suggestion));
+    }
+
+    public void bookDeleted(int id) {
+        CacheTransactions.afterCommit(() -> index.remove(SuggestionDto.Type.BOOK, id));
+    }
+
+    public void authorDeleted(int id) {
+        CacheTransactions.afterCommit(() -> index.remove(SuggestionDto.Type.AUTHOR, id));
+    }
+
+    private static SuggestionDto toSuggestion(Author author) {
+        return SuggestionDto.author(author.getId(), author.getName(), author.getSurname());
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.library.util;
+
+public record CacheStats(
+        long hitCount,
+        long missCount,
+        long evictionCount,
+        long expirationCount,
+        long loadSuccessCount,
+        long loadFailureCount,
+        long totalLoadTimeNanos
+) {
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    public double hitRatio() {
+        long requests = requestCount();
+        return requests == 0 ? 0.0 : (double) hitCount / requests;
+    }
+
+    public double averageLoadPenaltyNanos() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? 0.0 : (double) totalLoadTimeNanos / loads;
+    }
+}
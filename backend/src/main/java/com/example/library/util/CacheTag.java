@@ -0,0 +1,106 @@
+package com.example.library.util;
+
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Review;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import org.hibernate.Hibernate;
+
+/**
+ * Метка сущности, данные которой вошли в закэшированное значение.
+ * Изменение сущности инвалидирует все значения с её меткой во всех кэшах.
+ */
+public record CacheTag(Type type, int id) {
+
+    public enum Type {
+        BOOK,
+        AUTHOR,
+        REVIEW
+    }
+
+    public static CacheTag book(int id) {
+        return new CacheTag(Type.BOOK, id);
+    }
+
+    public static CacheTag author(int id) {
+        return new CacheTag(Type.AUTHOR, id);
+    }
+
+    public static CacheTag review(int id) {
+        return new CacheTag(Type.REVIEW, id);
+    }
+
+    // Книга вместе с вложенными авторами и отзывами; book == null - отметка об отсутствии.
+    // Незагруженные ленивые коллекции в значение не вошли и не добавляют меток
+    public static Set<CacheTag> ofBook(int id, Book book) {
+        Set<CacheTag> tags = new HashSet<>();
+        tags.add(book(id));
+        if (book != null) {
+            addAuthors(tags, book.getAuthors());
+            addReviews(tags, book.getReviews());
+        }
+        return tags;
+    }
+
+    // Автор вместе с вложенными книгами или с id книг, прочитанными без коллекции
+    public static Set<CacheTag> ofAuthor(int id, Author author) {
+        Set<CacheTag> tags = new HashSet<>();
+        tags.add(author(id));
+        if (author != null) {
+            addBooks(tags, author.getBooks());
+            if (author.getBookIds() != null) {
+                author.getBookIds().forEach(bookId -> tags.add(book(bookId)));
+            }
+        }
+        return tags;
+    }
+
+    // Отзывы книги зависят от самой книги
+    public static Set<CacheTag> ofReviews(int bookId, Collection<Review> reviews) {
+        Set<CacheTag> tags = new HashSet<>();
+        tags.add(book(bookId));
+        addReviews(tags, reviews);
+        return tags;
+    }
+
+    public static void addBooks(Set<CacheTag> tags, Collection<Book> books) {
+        if (isLoaded(books)) {
+            books.forEach(book -> tags.add(book(book.getId())));
+        }
+    }
+
+    public static void addAuthors(Set<CacheTag> tags, Collection<Author> authors) {
+        if (isLoaded(authors)) {
+            authors.forEach(author -> tags.add(author(author.getId())));
+        }
+    }
+
+    private static void addReviews(Set<CacheTag> tags, Collection<Review> reviews) {
+        if (isLoaded(reviews)) {
+            reviews.forEach(review -> tags.add(review(review.getId())));
+        }
+    }
+
+    // Метки не должны догружать коллекции: у отсоединённой сущности это исключение
+    private static boolean isLoaded(Collection<?> collection) {
+        return collection != null && Hibernate.isInitialized(collection);
+    }
+
+    // Формат "book:5" - для сообщений другим экземплярам приложения
+    public static CacheTag parse(String value) {
+        int separator = value.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cache tag: " + value);
+        }
+        return new CacheTag(Type.valueOf(value.substring(0, separator).toUpperCase(Locale.ROOT)),
+                Integer.parseInt(value.substring(separator + 1)));
+    }
+
+    @Override
+    public String toString() {
+        return type.name().toLowerCase(Locale.ROOT) + ":" + id;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.library.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Откладывает изменения кэшей до фиксации текущей транзакции Spring. Действия копятся
+ * в пакете, привязанном к транзакции, и выполняются по порядку в afterCommit; при откате
+ * выполняются только действия завершения. Вне пишущей транзакции и во время применения
+ * пакета действия выполняются сразу.
+ */
+public final class CacheTransactions {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheTransactions.class);
+
+    private CacheTransactions() {}
+
+    // true, если изменения кэша сейчас нужно откладывать до фиксации
+    public static boolean isWriteTransactionActive() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return false;
+        }
+        Batch batch = (Batch) TransactionSynchronizationManager.getResource(Batch.class);
+        return batch == null || !batch.applying;
+    }
+
+    public static void afterCommit(Runnable action) {
+        if (!isWriteTransactionActive()) {
+            action.run();
+            return;
+        }
+        currentBatch().onCommit.add(action);
+    }
+
+    // Выполняется после фиксации и после отката; вне транзакции - сразу
+    public static void afterCompletion(Runnable action) {
+        if (!isWriteTransactionActive()) {
+            action.run();
+            return;
+        }
+        currentBatch().onCompletion.add(action);
+    }
+
+    private static Batch currentBatch() {
+        Batch batch = (Batch) TransactionSynchronizationManager.getResource(Batch.class);
+        if (batch == null) {
+            batch = new Batch();
+            TransactionSynchronizationManager.bindResource(Batch.class, batch);
+            TransactionSynchronizationManager.registerSynchronization(batch);
+        }
+        return batch;
+    }
+
+    private static final class Batch implements TransactionSynchronization {
+        final List<Runnable> onCommit = new ArrayList<>();
+        final List<Runnable> onCompletion = new ArrayList<>();
+        boolean applying;
+
+        @Override
+        public void afterCommit() {
+            applying = true;
+            runAll(onCommit);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            applying = true;
+            try {
+                runAll(onCompletion);
+            } finally {
+                TransactionSynchronizationManager.unbindResourceIfPossible(Batch.class);
+            }
+        }
+
+        // Транзакция уже зафиксирована: ошибка кэша не должна доходить до вызывающего
+        private static void runAll(List<Runnable> actions) {
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Не удалось применить изменение кэша после транзакции: {}",
+                            e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -1,57 +1,1510 @@
 package com.example.library.util;
 
-import java.util.LinkedHashMap;
+import java.lang.reflect.Array;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class CacheUtil<K, V> {
 
-    private final LinkedHashMap<K, V> cache;
-    private final Logger logger = LoggerFactory.getLogger(CacheUtil.class);
+    private static final Logger logger = LoggerFactory.getLogger(CacheUtil.class);
+
+    // Минимальная ёмкость сегмента: мелкие кэши не дробятся, чтобы LRU оставался точным
+    private static final int MIN_STRIPE_CAPACITY = 16;
+    private static final int READ_BUFFER_SIZE = 32;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int EXPIRY_SWEEP_LIMIT = 16;
+    // Узел кэша, упакованный ключ и место в таблице сегмента: узел ConcurrentHashMap
+    // или слоты IntKeyTable при заполнении не выше трети обходятся примерно одинаково
+    private static final long ENTRY_OVERHEAD = 96;
+    // Маркер отсутствующего в источнике значения (негативное кэширование)
+    private static final Object ABSENT = new Object();
+    // Запись без проверки отметки инвалидаций: явный put заменяет идущие загрузки
+    private static final long UNCONDITIONAL = -1;
+
+    private final String name;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private volatile long maximumWeight;
+    // Границы изменения maximumWeight через resize; равны ему, если кэш не изменяемый
+    private final long minimumWeight;
+    private final long maximumWeightLimit;
+    private final boolean resizable;
+    // Промахи по недавно вытесненным ключам: попадания, которые дал бы кэш вдвое больше
+    private final LongAdder ghostHits = new LongAdder();
+    private final Weigher<? super K, ? super V> weigher;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final long expireAbsentAfterNanos;
+    private final long refreshAfterWriteNanos;
+    private final int refreshMinReads;
+    private final Executor refreshExecutor;
+    private final LongSupplier ticker;
+    private final StatsCounter statsCounter = new StatsCounter();
+    // Загрузки, выполняемые прямо сейчас: параллельные промахи по ключу ждут одну загрузку
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlightLoads =
+            new ConcurrentHashMap<>();
+    private final List<InvalidationListener<? super K>> invalidationListeners =
+            new CopyOnWriteArrayList<>();
+    // Второй уровень вне кучи, null - отключён
+    private final OffHeapTier<K> offHeap;
+    private final Codec<V> offHeapCodec;
+    // Индекс зависимостей между кэшами, null - записи не помечаются
+    private final DependencyIndex dependencies;
+    private final BiFunction<? super K, ? super V, ? extends Collection<CacheTag>> tagger;
+    // Изменения внутри транзакции применяются после её фиксации
+    private final boolean transactional;
+    // Сегменты хранят узлы в IntKeyTable вместо ConcurrentHashMap
+    private final boolean intKeys;
+    // Политика W-TinyLFU вместо LRU
+    private final boolean tinyLfu;
+    // Ключи, записанные в незавершённых транзакциях
+    private final ConcurrentHashMap<K, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
 
     public CacheUtil(int capacity) {
-        cache = new LinkedHashMap<>(capacity, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-                boolean shouldRemove = size() > capacity;
-                if (shouldRemove) {
-                    logger.debug("Удаление устаревшего элемента из кэша. Ключ: {}",
-                            eldest.getKey());
-                }
-                return shouldRemove;
-            }
-        };
+        this(CacheUtil.<K, V>builder().maximumWeight(capacity));
+    }
+
+    public CacheUtil(int capacity, int concurrencyLevel) {
+        this(CacheUtil.<K, V>builder()
+                .maximumWeight(capacity)
+                .concurrencyLevel(concurrencyLevel));
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheUtil(Builder<K, V> builder) {
+        if (builder.maximumWeight <= 0) {
+            throw new IllegalArgumentException(
+                    "Cache maximum weight must be positive: " + builder.maximumWeight);
+        }
+
+        this.resizable = builder.minimumWeight > 0;
+        this.minimumWeight = resizable ? builder.minimumWeight : builder.maximumWeight;
+        this.maximumWeightLimit = resizable
+                ? builder.maximumWeightLimit : builder.maximumWeight;
+        if (minimumWeight > builder.maximumWeight
+                || builder.maximumWeight > maximumWeightLimit) {
+            throw new IllegalArgumentException("Cache maximum weight " + builder.maximumWeight
+                    + " is out of bounds [" + minimumWeight + ", " + maximumWeightLimit + "]");
+        }
+
+        // Сегменты не дробятся мельче, чем позволяет наименьший возможный размер кэша
+        int stripeCount = 1;
+        while (stripeCount < builder.concurrencyLevel
+                && stripeCount * 2L * MIN_STRIPE_CAPACITY <= minimumWeight) {
+            stripeCount <<= 1;
+        }
+
+        this.name = builder.name;
+        this.maximumWeight = builder.maximumWeight;
+        this.weigher = builder.weigher;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.expireAbsentAfterNanos = builder.expireAbsentAfterNanos;
+        this.refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+        this.refreshMinReads = builder.refreshMinReads;
+        this.refreshExecutor = builder.refreshExecutor;
+        this.ticker = builder.ticker;
+        this.offHeap = builder.offHeapMaximumBytes > 0
+                ? new OffHeapTier<>(builder.offHeapMaximumBytes, builder.offHeapFile)
+                : null;
+        this.offHeapCodec = builder.offHeapCodec;
+        this.dependencies = builder.dependencies;
+        this.tagger = builder.tagger;
+        this.transactional = builder.transactional;
+        this.intKeys = builder.intKeys;
+        this.tinyLfu = builder.tinyLfu;
+        this.stripeMask = stripeCount - 1;
+        this.stripes = (Stripe[]) Array.newInstance(Stripe.class, stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeShare(maximumWeight, i),
+                    stripeShare(maximumWeightLimit, i));
+        }
+    }
+
+    private long stripeShare(long weight, int stripe) {
+        return weight / stripes.length + (stripe < weight % stripes.length ? 1 : 0);
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
     }
 
     public void put(K key, V value) {
-        cache.put(key, value);
-        logger.debug("Объект добавлен в кэш. Ключ: {}", key);
-        logger.trace("Добавлен объект: {} = {}", key, value);
+        Objects.requireNonNull(value, "Cache value cannot be null");
+        if (transactional && CacheTransactions.isWriteTransactionActive()) {
+            putAfterCommit(key, value);
+            return;
+        }
+        store(key, value, UNCONDITIONAL, UNCONDITIONAL);
+        notifyInvalidated(key);
     }
 
+    /**
+     * Прогрев пакетом ключей: loader возвращает найденные значения по ключам. Отметки
+     * инвалидаций снимаются до обращения к источнику, как в load, и значение
+     * сохраняется, только если за время загрузки ключ и метки значения не изменялись
+     * и ключа в кэше ещё нет; проверка и вставка идут под блокировкой сегмента.
+     * Слушатели не уведомляются. Возвращает число сохранённых значений.
+     */
+    public int preload(Collection<K> keys,
+                       Function<? super List<K>, ? extends Map<K, ? extends V>> loader) {
+        List<K> batch = List.copyOf(keys);
+        Map<K, Long> stamps = new HashMap<>();
+        for (K key : batch) {
+            stamps.put(key, stripeFor(key).invalidationStamp());
+        }
+        long tagStamp = tagStamp();
+        Map<K, ? extends V> values = loader.apply(batch);
+
+        int stored = 0;
+        for (Map.Entry<K, ? extends V> entry : values.entrySet()) {
+            Long stamp = stamps.get(entry.getKey());
+            if (stamp != null && entry.getValue() != null
+                    && store(entry.getKey(), entry.getValue(), stamp, tagStamp, true)) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    private void store(K key, V value, long stamp, long tagStamp) {
+        store(key, value, stamp, tagStamp, false);
+    }
+
+    // ifAbsent - не заменять значение, уже лежащее в кэше (в куче или вне её)
+    private boolean store(K key, V value, long stamp, long tagStamp, boolean ifAbsent) {
+        Objects.requireNonNull(value, "Cache value cannot be null");
+        Write result = stripeFor(key).put(key, value, weigher.weigh(key, value), 0, stamp,
+                tagStamp, ifAbsent);
+        switch (result) {
+            case STORED -> {
+                logger.debug("Объект добавлен в кэш. Ключ: {}", key);
+                logger.trace("Добавлен объект: {} = {}", key, value);
+            }
+            case TOO_HEAVY ->
+                    logger.debug("Объект слишком тяжёлый для кэша и не сохранён. Ключ: {}", key);
+            case STALE -> logger.debug(
+                    "Ключ изменён во время загрузки, значение не сохранено. Ключ: {}", key);
+            case PRESENT -> logger.debug("Ключ уже есть в кэше, значение не заменено. Ключ: {}",
+                    key);
+        }
+        return result == Write.STORED;
+    }
+
+    /**
+     * Запись из пишущей транзакции: до фиксации ключ удаляется, чтобы читатели шли
+     * в источник, а после фиксации значение сохраняется. Если ключ одновременно
+     * записывают несколько транзакций, порядок их фиксации неизвестен, и вместо
+     * сохранения каждая из них только удаляет ключ.
+     */
+    private void putAfterCommit(K key, V value) {
+        stripeFor(key).remove(key);
+        pendingWrites.compute(key, (k, pending) -> pending == null
+                ? new PendingWrite()
+                : pending.join());
+        CacheTransactions.afterCommit(() -> {
+            PendingWrite pending = pendingWrites.get(key);
+            if (pending != null && pending.conflicted) {
+                logger.debug("Ключ записан в нескольких транзакциях и удалён. Ключ: {}", key);
+                evict(key);
+            } else {
+                put(key, value);
+            }
+        });
+        CacheTransactions.afterCompletion(() ->
+                pendingWrites.computeIfPresent(key, (k, pending) -> pending.leave()));
+    }
+
+    // Промах по ключу, отмеченному как отсутствующий, не учитывается: его учтёт isAbsent
     public V get(K key) {
-        V value = cache.get(key);
-        if (value != null) {
-            logger.debug("Объект найден в кэше. Ключ: {}", key);
-            logger.trace("Получен объект: {} = {}", key, value);
-        } else {
+        Node<K, V> node = getLiveNode(key);
+        if (node == null) {
+            statsCounter.recordMiss();
             logger.debug("Объект не найден в кэше. Ключ: {}", key);
+            return null;
+        }
+
+        V value = node.value;
+        if (value == ABSENT) {
+            return null;
         }
+        statsCounter.recordHit();
+        logger.debug("Объект найден в кэше. Ключ: {}", key);
+        logger.trace("Получен объект: {} = {}", key, value);
         return value;
     }
 
+    // Запоминает, что значения для ключа нет в источнике, на время expireAbsentAfter
+    public void markAbsent(K key) {
+        markAbsent(key, UNCONDITIONAL, UNCONDITIONAL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void markAbsent(K key, long stamp, long tagStamp) {
+        if (expireAbsentAfterNanos <= 0) {
+            return;
+        }
+        long expireAt = ticker.getAsLong() + expireAbsentAfterNanos;
+        if (stripeFor(key).put(key, (V) ABSENT, 1, expireAt, stamp, tagStamp, false)
+                == Write.STORED) {
+            logger.debug("Ключ отмечен в кэше как отсутствующий. Ключ: {}", key);
+        }
+    }
+
+    public boolean isAbsent(K key) {
+        Node<K, V> node = getLiveNode(key);
+        if (node == null || node.value != ABSENT) {
+            return false;
+        }
+        statsCounter.recordHit();
+        logger.debug("Ключ отсутствует в источнике (негативный кэш). Ключ: {}", key);
+        return true;
+    }
+
+    private Node<K, V> getLiveNode(K key) {
+        Stripe stripe = stripeFor(key);
+        Node<K, V> node = stripe.data.get(key);
+        if (node == null) {
+            return offHeap != null ? promote(stripe, key) : null;
+        }
+
+        if (expires()) {
+            long now = ticker.getAsLong();
+            if (isExpired(node, now)) {
+                if (stripe.removeNode(node)) {
+                    statsCounter.recordExpiration();
+                }
+                logger.debug("Срок хранения объекта в кэше истёк. Ключ: {}", key);
+                return null;
+            }
+            if (expireAfterAccessNanos > 0) {
+                node.accessTime = now;
+            }
+        }
+
+        stripe.recordRead(node);
+        return node;
+    }
+
     public void evict(K key) {
-        if (cache.containsKey(key)) {
-            cache.remove(key);
+        if (stripeFor(key).remove(key)) {
             logger.debug("Объект удален из кэша. Ключ: {}", key);
         } else {
             logger.debug("Объект не найден в кэше. Ключ: {}", key);
         }
+        if (transactional && CacheTransactions.isWriteTransactionActive()) {
+            // Повторно после фиксации: убирает значения, загруженные до неё, и рассылает
+            CacheTransactions.afterCommit(() -> evict(key));
+            return;
+        }
+        notifyInvalidated(key);
     }
 
     public void clear() {
-        cache.clear();
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+        if (offHeap != null) {
+            offHeap.clear();
+        }
+        if (dependencies != null) {
+            dependencies.unregisterAll(this);
+        }
         logger.info("Кэш полностью очищен");
+        for (InvalidationListener<? super K> listener : invalidationListeners) {
+            listener.onInvalidateAll();
+        }
+    }
+
+    public void addInvalidationListener(InvalidationListener<? super K> listener) {
+        invalidationListeners.add(Objects.requireNonNull(listener));
+    }
+
+    private void notifyInvalidated(K key) {
+        for (InvalidationListener<? super K> listener : invalidationListeners) {
+            listener.onInvalidate(key);
+        }
+    }
+
+    /**
+     * Переносит запись из уровня вне кучи обратно в кучу. Десериализация идёт вне
+     * блокировки сегмента; если за это время ключ был инвалидирован или записан заново,
+     * прочитанное значение отбрасывается.
+     */
+    private Node<K, V> promote(Stripe stripe, K key) {
+        OffHeapTier.Entry entry;
+        long stamp;
+        stripe.lock.lock();
+        try {
+            stamp = stripe.invalidations;
+            entry = offHeap.take(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        V value;
+        try {
+            value = offHeapCodec.decode(entry.bytes());
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось прочитать объект из кэша вне кучи. Ключ: {}: {}",
+                    key, e.getMessage());
+            return null;
+        }
+        long now = tracksTime() ? ticker.getAsLong() : 0;
+        if ((expireAfterWriteNanos > 0 && now - entry.writeTime() >= expireAfterWriteNanos)
+                || (expireAfterAccessNanos > 0
+                && now - entry.accessTime() >= expireAfterAccessNanos)) {
+            statsCounter.recordExpiration();
+            logger.debug("Срок хранения объекта вне кучи истёк. Ключ: {}", key);
+            return null;
+        }
+
+        Node<K, V> node = stripe.promote(key, value, weigher.weigh(key, value),
+                entry.writeTime(), now, stamp);
+        if (node == null) {
+            Node<K, V> current = stripe.data.get(key);
+            return current != null && !isExpired(current, now) ? current : null;
+        }
+        logger.debug("Объект перенесён в кучу из кэша вне кучи. Ключ: {}", key);
+        return node;
+    }
+
+    // Вытесненные из кучи записи сериализуются вне блокировки и уходят во второй уровень
+    private void demote(Stripe stripe, List<Node<K, V>> evicted, long stamp) {
+        for (Node<K, V> node : evicted) {
+            byte[] bytes;
+            try {
+                bytes = offHeapCodec.encode(node.value);
+            } catch (RuntimeException e) {
+                logger.debug("Объект не сериализуется и не сохранён вне кучи. Ключ: {}: {}",
+                        node.key, e.getMessage());
+                continue;
+            }
+            stripe.lock.lock();
+            try {
+                if (stripe.invalidations == stamp && !stripe.data.containsKey(node.key)) {
+                    offHeap.put(node.key, bytes, node.sequence, node.writeTime,
+                            node.accessTime);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    // Полная очистка просроченных записей; в обычной работе они удаляются лениво
+    public void cleanUp() {
+        if (!expires()) {
+            return;
+        }
+        long now = ticker.getAsLong();
+        for (Stripe stripe : stripes) {
+            stripe.expireEntries(now, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Возвращает значение из кэша, а при промахе загружает его через loader.
+     * Одновременные промахи по одному ключу объединяются: loader вызывается один раз,
+     * остальные потоки ждут и получают тот же результат или то же исключение. Загрузки
+     * внутри пишущей транзакции транзакционного кэша не объединяются и не сохраняются.
+     * Если loader вернул null, ключ отмечается как отсутствующий и возвращается null.
+     * При включённом refreshAhead часто читаемые записи старше refreshAfterWrite
+     * перезагружаются в фоне через тот же loader, а читатели получают текущее значение.
+     */
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        Node<K, V> node = getLiveNode(key);
+        if (node != null) {
+            statsCounter.recordHit();
+            V value = node.value;
+            if (value == ABSENT) {
+                return null;
+            }
+            if (refreshAfterWriteNanos > 0) {
+                refreshIfHot(node, loader);
+            }
+            return value;
+        }
+        statsCounter.recordMiss();
+
+        // Пишущая транзакция видит свои незафиксированные изменения: её результат
+        // не отдаётся другим потокам, а сама она не ждёт чужих загрузок
+        if (transactional && CacheTransactions.isWriteTransactionActive()) {
+            return load(key, loader);
+        }
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlightLoads.putIfAbsent(key, load);
+        if (existing != null) {
+            logger.debug("Ожидание уже выполняющейся загрузки. Ключ: {}", key);
+            return await(existing);
+        }
+
+        try {
+            // Загрузка могла завершиться между проверкой кэша и регистрацией
+            node = getLiveNode(key);
+            V value = node != null ? node.value : load(key, loader);
+            load.complete(value == ABSENT ? null : value);
+            return value == ABSENT ? null : value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(key, load);
+        }
+    }
+
+    private void refreshIfHot(Node<K, V> node, Function<? super K, ? extends V> loader) {
+        node.reads++;
+        if (node.reads < refreshMinReads
+                || ticker.getAsLong() - node.writeTime < refreshAfterWriteNanos
+                || !Node.REFRESHING.compareAndSet(node, 0, 1)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> refresh(node, loader));
+            logger.debug("Запланировано фоновое обновление. Ключ: {}", node.key);
+        } catch (RejectedExecutionException e) {
+            // Очередь обновлений заполнена: попробуем при одном из следующих чтений
+            node.refreshing = 0;
+            logger.debug("Очередь фоновых обновлений заполнена. Ключ: {}", node.key);
+        }
+    }
+
+    // Новое значение сохраняется, только если запись не изменилась и не удалялась за время загрузки
+    private void refresh(Node<K, V> node, Function<? super K, ? extends V> loader) {
+        K key = node.key;
+        Stripe stripe = stripeFor(key);
+        try {
+            long sequence = stripe.sequenceOf(node);
+            if (sequence < 0) {
+                return;
+            }
+            long tagStamp = tagStamp();
+            long loadStart = System.nanoTime();
+            V value;
+            try {
+                value = loader.apply(key);
+            } catch (RuntimeException e) {
+                recordLoad(System.nanoTime() - loadStart, false);
+                logger.warn("Не удалось обновить объект в кэше. Ключ: {}: {}",
+                        key, e.getMessage());
+                return;
+            }
+            recordLoad(System.nanoTime() - loadStart, value != null);
+
+            if (value == null) {
+                stripe.removeIfUnchanged(node, sequence);
+                logger.debug("Объект больше не существует и удалён из кэша. Ключ: {}", key);
+            } else if (stripe.replaceIfUnchanged(node, sequence, value,
+                    weigher.weigh(key, value), tagStamp)) {
+                logger.debug("Объект обновлён в фоне. Ключ: {}", key);
+            }
+        } finally {
+            node.refreshing = 0;
+        }
+    }
+
+    /**
+     * Загруженное значение сохраняется, только если за время загрузки ключ не удаляли
+     * и не записывали: иначе оно могло быть прочитано до изменения и устарело.
+     * В пишущей транзакции значение не сохраняется, поскольку может быть не зафиксировано.
+     */
+    private V load(K key, Function<? super K, ? extends V> loader) {
+        long stamp = stripeFor(key).beginLoad(key);
+        long tagStamp = tagStamp();
+        long loadStart = System.nanoTime();
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            recordLoad(System.nanoTime() - loadStart, false);
+            throw e;
+        }
+        recordLoad(System.nanoTime() - loadStart, value != null);
+
+        if (transactional && CacheTransactions.isWriteTransactionActive()) {
+            return value;
+        }
+        if (value == null) {
+            markAbsent(key, stamp, tagStamp);
+        } else {
+            store(key, value, stamp, tagStamp);
+        }
+        return value;
+    }
+
+    // Отметка версий меток до загрузки; без индекса зависимостей проверять нечего
+    private long tagStamp() {
+        return dependencies != null ? dependencies.loadStamp() : UNCONDITIONAL;
+    }
+
+    private static <V> V await(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void recordLoad(long loadTimeNanos, boolean success) {
+        if (success) {
+            statsCounter.recordLoadSuccess(loadTimeNanos);
+        } else {
+            statsCounter.recordLoadFailure(loadTimeNanos);
+        }
+    }
+
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    // Оценка занимаемой кэшем памяти; обходит все записи, поэтому только для мониторинга
+    public long estimatedFootprint() {
+        long[] footprint = new long[1];
+        for (Stripe stripe : stripes) {
+            stripe.data.forEach(node ->
+                    footprint[0] += ENTRY_OVERHEAD + SizeEstimator.estimate(node.value));
+        }
+        return footprint[0];
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.data.size();
+        }
+        return size;
+    }
+
+    public long weightedSize() {
+        long weight = 0;
+        for (Stripe stripe : stripes) {
+            weight += stripe.weightedSize;
+        }
+        return weight;
+    }
+
+    /**
+     * Меняет бюджет кэша в пределах границ из Builder.resizable. При уменьшении
+     * лишние записи вытесняются сразу (и уходят во второй уровень, если он включён).
+     * Возвращает установленный бюджет.
+     */
+    public long resize(long newMaximumWeight) {
+        if (!resizable) {
+            throw new IllegalStateException("Cache " + name + " is not resizable");
+        }
+        long weight = Math.max(minimumWeight, Math.min(maximumWeightLimit, newMaximumWeight));
+        synchronized (stripes) {
+            if (weight == maximumWeight) {
+                return weight;
+            }
+            logger.info("Бюджет кэша {} изменён: {} -> {}", name, maximumWeight, weight);
+            maximumWeight = weight;
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i].resize(stripeShare(weight, i));
+            }
+        }
+        return weight;
+    }
+
+    public boolean isResizable() {
+        return resizable;
+    }
+
+    public long minimumWeight() {
+        return minimumWeight;
+    }
+
+    public long maximumWeightLimit() {
+        return maximumWeightLimit;
+    }
+
+    // Промахи getOrLoad по ключам, недавно вытесненным из-за нехватки места
+    public long ghostHitCount() {
+        return ghostHits.sum();
+    }
+
+    public long maximumWeight() {
+        return maximumWeight;
+    }
+
+    public int offHeapSize() {
+        return offHeap != null ? offHeap.size() : 0;
+    }
+
+    public long offHeapUsedBytes() {
+        return offHeap != null ? offHeap.usedBytes() : 0;
+    }
+
+    public long offHeapMaximumBytes() {
+        return offHeap != null ? offHeap.maximumBytes() : 0;
+    }
+
+    public long offHeapEvictionCount() {
+        return offHeap != null ? offHeap.evictionCount() : 0;
+    }
+
+    private Stripe stripeFor(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return stripes[(h * 0x9E3779B9) >>> 16 & stripeMask];
+    }
+
+    // Время записи нужно и для сроков хранения, и для фонового обновления
+    private boolean tracksTime() {
+        return expires() || refreshAfterWriteNanos > 0;
+    }
+
+    private boolean expires() {
+        return expireAfterWriteNanos > 0 || expireAfterAccessNanos > 0
+                || expireAbsentAfterNanos > 0;
+    }
+
+    private boolean isExpired(Node<K, V> node, long now) {
+        return (node.expireAt != 0 && now - node.expireAt >= 0)
+                || (expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos)
+                || (expireAfterAccessNanos > 0
+                && now - node.accessTime >= expireAfterAccessNanos);
+    }
+
+    private enum Write { STORED, TOO_HEAVY, STALE, PRESENT }
+
+    // Число незавершённых транзакций, записавших ключ; conflicted - их было больше одной
+    private static final class PendingWrite {
+        int writers = 1;
+        boolean conflicted;
+
+        PendingWrite join() {
+            writers++;
+            conflicted = true;
+            return this;
+        }
+
+        PendingWrite leave() {
+            return --writers == 0 ? null : this;
+        }
+    }
+
+    /**
+     * Узлы сегмента по ключам. Изменения выполняются под блокировкой сегмента,
+     * get, containsKey, size и forEach вызываются и без неё.
+     */
+    private interface NodeTable<K, V> {
+        Node<K, V> get(K key);
+
+        boolean containsKey(K key);
+
+        void put(K key, Node<K, V> node);
+
+        void remove(K key, Node<K, V> node);
+
+        void clear();
+
+        int size();
+
+        void forEach(Consumer<Node<K, V>> action);
+    }
+
+    private static final class HashNodeTable<K, V> implements NodeTable<K, V> {
+        private final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+
+        @Override
+        public Node<K, V> get(K key) {
+            return map.get(key);
+        }
+
+        @Override
+        public boolean containsKey(K key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public void put(K key, Node<K, V> node) {
+            map.put(key, node);
+        }
+
+        @Override
+        public void remove(K key, Node<K, V> node) {
+            map.remove(key, node);
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public void forEach(Consumer<Node<K, V>> action) {
+            map.values().forEach(action);
+        }
+    }
+
+    // Только для ключей Integer: ключ сравнивается как int, без equals и узлов карты
+    private static final class IntNodeTable<K, V> implements NodeTable<K, V> {
+        private final IntKeyTable<Node<K, V>> table = new IntKeyTable<>(node -> node.hash);
+
+        @Override
+        public Node<K, V> get(K key) {
+            return table.get((Integer) key);
+        }
+
+        @Override
+        public boolean containsKey(K key) {
+            return table.containsKey((Integer) key);
+        }
+
+        @Override
+        public void put(K key, Node<K, V> node) {
+            table.put((Integer) key, node);
+        }
+
+        @Override
+        public void remove(K key, Node<K, V> node) {
+            table.remove((Integer) key, node);
+        }
+
+        @Override
+        public void clear() {
+            table.clear();
+        }
+
+        @Override
+        public int size() {
+            return table.size();
+        }
+
+        @Override
+        public void forEach(Consumer<Node<K, V>> action) {
+            table.forEach(action);
+        }
+    }
+
+    private static final class Node<K, V> {
+        @SuppressWarnings("rawtypes")
+        static final AtomicIntegerFieldUpdater<Node> REFRESHING =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "refreshing");
+
+        final K key;
+        // hashCode ключа; для Integer совпадает со значением и проверяется IntKeyTable
+        final int hash;
+        volatile V value;
+        volatile long writeTime;
+        volatile long accessTime;
+        // Индивидуальный срок жизни (для маркеров отсутствия), 0 - не задан
+        volatile long expireAt;
+        // 1, пока выполняется фоновое обновление
+        volatile int refreshing;
+        // Приблизительное число чтений с момента записи: потерянные инкременты допустимы
+        int reads;
+
+        // Поля ниже защищены блокировкой сегмента
+        int weight;
+        // Запись в окне W-TinyLFU, ещё не допущенная в основную часть
+        boolean inWindow;
+        // Порядковый номер записи в сегменте: упорядочивает копии вне кучи
+        long sequence;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.hash = key != null ? key.hashCode() : 0;
+            this.value = value;
+        }
+
+        boolean isLinked() {
+            return prev != null;
+        }
+    }
+
+    /**
+     * Сегмент кэша: данные лежат в ConcurrentHashMap и читаются без блокировки,
+     * а порядок LRU и суммарный вес ведутся под блокировкой сегмента. Чтения попадают
+     * в кольцевой буфер с потерями и применяются к списку, когда блокировка свободна.
+     *
+     * <p>При W-TinyLFU новые записи попадают в окно LRU размером 1% бюджета. Вытесненная
+     * из окна запись становится кандидатом и остаётся в кэше, только если по оценке
+     * FrequencySketch к ней обращались чаще, чем к старейшей записи основной части;
+     * иначе вытесняется сам кандидат. Так однократный обход id не вымывает популярные
+     * записи.
+     */
+    private final class Stripe {
+        final NodeTable<K, V> data = intKeys ? new IntNodeTable<>() : new HashNodeTable<>();
+        final ReentrantLock lock = new ReentrantLock();
+        final Node<K, V> head = new Node<>(null, null);
+        final AtomicReferenceArray<Node<K, V>> readBuffer =
+                new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        final AtomicLong readCounter = new AtomicLong();
+        volatile long maximumWeight;
+        volatile long weightedSize;
+        // Недавно вытесненные ключи (только для изменяемых кэшей), защищены блокировкой
+        final LinkedHashSet<K> ghosts = resizable ? new LinkedHashSet<>() : null;
+        // Окно и частоты W-TinyLFU, null - обычный LRU; защищены блокировкой
+        final Node<K, V> windowHead;
+        final FrequencySketch sketch;
+        long windowWeight;
+        // Защищены блокировкой: счётчик записей и счётчик инвалидаций, по которому
+        // отбрасываются переносы между уровнями и загрузки, начатые до evict, put или clear
+        long writeSequence;
+        long invalidations;
+
+        Stripe(long maximumWeight, long maximumWeightLimit) {
+            this.maximumWeight = maximumWeight;
+            head.prev = head;
+            head.next = head;
+            if (tinyLfu) {
+                windowHead = new Node<>(null, null);
+                windowHead.prev = windowHead;
+                windowHead.next = windowHead;
+                sketch = new FrequencySketch(maximumWeightLimit);
+            } else {
+                windowHead = null;
+                sketch = null;
+            }
+        }
+
+        void recordRead(Node<K, V> node) {
+            long index = readCounter.getAndIncrement();
+            readBuffer.lazySet((int) (index & READ_BUFFER_MASK), node);
+            if ((index & READ_BUFFER_MASK) == READ_BUFFER_MASK && lock.tryLock()) {
+                try {
+                    drainReadBuffer();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        // Отметка инвалидаций перед загрузкой; заодно учитывает промах по вытесненному ключу
+        long beginLoad(K key) {
+            lock.lock();
+            try {
+                if (ghosts != null && ghosts.remove(key)) {
+                    ghostHits.increment();
+                }
+                if (sketch != null) {
+                    sketch.increment(key.hashCode());
+                }
+                return invalidations;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Отметка инвалидаций без учёта промаха: прогрев не считается обращением к ключу
+        long invalidationStamp() {
+            lock.lock();
+            try {
+                return invalidations;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void resize(long newMaximumWeight) {
+            List<Node<K, V>> evicted;
+            long stamp;
+            lock.lock();
+            try {
+                maximumWeight = newMaximumWeight;
+                drainReadBuffer();
+                evicted = evictOverflow();
+                stamp = invalidations;
+            } finally {
+                lock.unlock();
+            }
+            if (!evicted.isEmpty()) {
+                demote(this, evicted, stamp);
+            }
+        }
+
+        // loadStamp - отметка инвалидаций до загрузки значения или UNCONDITIONAL,
+        // tagStamp - отметка версий меток из DependencyIndex.loadStamp или UNCONDITIONAL,
+        // ifAbsent - не заменять уже сохранённое значение
+        Write put(K key, V value, int weight, long expireAt, long loadStamp, long tagStamp,
+                  boolean ifAbsent) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for key: " + key);
+            }
+            boolean expires = expires();
+            long now = tracksTime() ? ticker.getAsLong() : 0;
+            List<Node<K, V>> evicted;
+            long stamp;
+
+            lock.lock();
+            try {
+                if (loadStamp == UNCONDITIONAL) {
+                    invalidations++;
+                    if (sketch != null) {
+                        sketch.increment(key.hashCode());
+                    }
+                } else if (loadStamp != invalidations) {
+                    return Write.STALE;
+                }
+                if (ifAbsent && (data.containsKey(key)
+                        || (offHeap != null && offHeap.contains(key)))) {
+                    return Write.PRESENT;
+                }
+                drainReadBuffer();
+                if (expires) {
+                    expireEntries(now, EXPIRY_SWEEP_LIMIT);
+                }
+                if (offHeap != null) {
+                    offHeap.remove(key);
+                }
+
+                Node<K, V> node = data.get(key);
+                if (weight > maximumWeight) {
+                    if (node != null) {
+                        unlinkAndRemove(node);
+                    }
+                    return Write.TOO_HEAVY;
+                }
+                node = insert(node, key, value, weight, now, now, tagStamp);
+                if (node == null) {
+                    return Write.STALE;
+                }
+                node.expireAt = expireAt;
+                evicted = evictOverflow();
+                stamp = invalidations;
+            } finally {
+                lock.unlock();
+            }
+            if (!evicted.isEmpty()) {
+                demote(this, evicted, stamp);
+            }
+            return Write.STORED;
+        }
+
+        // Возвращает null, если ключ успели инвалидировать или записать заново
+        Node<K, V> promote(K key, V value, int weight, long writeTime, long now, long stamp) {
+            if (weight < 0 || weight > maximumWeight) {
+                return null;
+            }
+            Node<K, V> node;
+            List<Node<K, V>> evicted;
+            lock.lock();
+            try {
+                if (invalidations != stamp || data.containsKey(key)) {
+                    return null;
+                }
+                if (sketch != null) {
+                    sketch.increment(key.hashCode());
+                }
+                drainReadBuffer();
+                node = insert(null, key, value, weight, writeTime, now, UNCONDITIONAL);
+                evicted = evictOverflow();
+                stamp = invalidations;
+            } finally {
+                lock.unlock();
+            }
+            if (!evicted.isEmpty()) {
+                demote(this, evicted, stamp);
+            }
+            return node;
+        }
+
+        // Возвращает null, если метки значения инвалидировали после tagStamp: запись удалена
+        private Node<K, V> insert(Node<K, V> node, K key, V value, int weight,
+                                  long writeTime, long now, long tagStamp) {
+            if (node != null) {
+                node.value = value;
+                weightedSize += weight - node.weight;
+                if (node.inWindow) {
+                    windowWeight += weight - node.weight;
+                }
+                node.weight = weight;
+                moveToTail(node);
+            } else {
+                node = new Node<>(key, value);
+                node.weight = weight;
+                data.put(key, node);
+                weightedSize += weight;
+                if (windowHead != null) {
+                    node.inWindow = true;
+                    windowWeight += weight;
+                }
+                linkLast(node);
+            }
+            if (dependencies != null) {
+                Collection<CacheTag> tags = tagger.apply(key, value != ABSENT ? value : null);
+                dependencies.register(CacheUtil.this, key, tags);
+                // Проверка после регистрации: более поздняя инвалидация найдёт запись по метке
+                if (tagStamp != UNCONDITIONAL && dependencies.changedSince(tags, tagStamp)) {
+                    unlinkAndRemove(node);
+                    return null;
+                }
+            }
+            node.sequence = ++writeSequence;
+            node.writeTime = writeTime;
+            node.accessTime = now;
+            node.expireAt = 0;
+            node.reads = 0;
+            return node;
+        }
+
+        // Порядковый номер записи или -1, если узел уже удалён из кэша
+        long sequenceOf(Node<K, V> node) {
+            lock.lock();
+            try {
+                return node.isLinked() ? node.sequence : -1;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean replaceIfUnchanged(Node<K, V> node, long sequence, V value, int weight,
+                                   long tagStamp) {
+            if (weight < 0 || weight > maximumWeight) {
+                removeIfUnchanged(node, sequence);
+                return false;
+            }
+            long now = ticker.getAsLong();
+            List<Node<K, V>> evicted;
+            long stamp;
+            lock.lock();
+            try {
+                if (!node.isLinked() || node.sequence != sequence) {
+                    return false;
+                }
+                if (insert(node, node.key, value, weight, now, now, tagStamp) == null) {
+                    return false;
+                }
+                evicted = evictOverflow();
+                stamp = invalidations;
+            } finally {
+                lock.unlock();
+            }
+            if (!evicted.isEmpty()) {
+                demote(this, evicted, stamp);
+            }
+            return true;
+        }
+
+        void removeIfUnchanged(Node<K, V> node, long sequence) {
+            lock.lock();
+            try {
+                if (node.isLinked() && node.sequence == sequence) {
+                    unlinkAndRemove(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Вытесняет старейшие записи; при включённом втором уровне возвращает их для переноса
+        private List<Node<K, V>> evictOverflow() {
+            List<Node<K, V>> evicted = List.of();
+            if (windowHead != null) {
+                evicted = admitFromWindow(evicted);
+            }
+            while (weightedSize > maximumWeight) {
+                evicted = evict(head.next != head ? head.next : windowHead.next, evicted);
+            }
+            return evicted;
+        }
+
+        // Записи сверх окна переходят в основную часть, если частота выше, чем у жертвы
+        private List<Node<K, V>> admitFromWindow(List<Node<K, V>> evicted) {
+            long windowMaximum = Math.max(1, maximumWeight / 100);
+            while (windowWeight > windowMaximum) {
+                Node<K, V> candidate = windowHead.next;
+                unlink(candidate);
+                candidate.inWindow = false;
+                windowWeight -= candidate.weight;
+                linkLast(candidate);
+
+                Node<K, V> victim = head.next;
+                if (weightedSize > maximumWeight && victim != candidate) {
+                    evicted = evict(sketch.frequency(candidate.hash)
+                            > sketch.frequency(victim.hash) ? victim : candidate, evicted);
+                }
+            }
+            return evicted;
+        }
+
+        // Возвращает список для переноса во второй уровень, создавая его при необходимости
+        private List<Node<K, V>> evict(Node<K, V> node, List<Node<K, V>> evicted) {
+            statsCounter.recordEviction();
+            if (ghosts != null) {
+                rememberEvicted(node.key);
+            }
+            logger.debug("Удаление устаревшего элемента из кэша. Ключ: {}", node.key);
+            if (offHeap != null && node.value != ABSENT) {
+                // Запись уходит во второй уровень и остаётся зарегистрированной в индексе
+                detach(node);
+                if (evicted.isEmpty()) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(node);
+            } else {
+                unlinkAndRemove(node);
+            }
+            return evicted;
+        }
+
+        // Хранит не больше ключей, чем записей в сегменте: оценка для удвоенного бюджета
+        private void rememberEvicted(K key) {
+            ghosts.remove(key);
+            ghosts.add(key);
+            int limit = Math.max(MIN_STRIPE_CAPACITY, data.size());
+            Iterator<K> eldest = ghosts.iterator();
+            while (ghosts.size() > limit) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        boolean remove(K key) {
+            lock.lock();
+            try {
+                invalidations++;
+                if (ghosts != null) {
+                    ghosts.remove(key);
+                }
+                if (offHeap != null) {
+                    offHeap.remove(key);
+                }
+                if (dependencies != null) {
+                    dependencies.unregister(CacheUtil.this, key);
+                }
+                Node<K, V> node = data.get(key);
+                if (node == null) {
+                    return false;
+                }
+                unlinkAndRemove(node);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean removeNode(Node<K, V> node) {
+            lock.lock();
+            try {
+                if (!node.isLinked()) {
+                    return false;
+                }
+                unlinkAndRemove(node);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                invalidations++;
+                data.clear();
+                if (ghosts != null) {
+                    ghosts.clear();
+                }
+                while (head.next != head) {
+                    unlink(head.next);
+                }
+                if (windowHead != null) {
+                    while (windowHead.next != windowHead) {
+                        unlink(windowHead.next);
+                    }
+                    windowWeight = 0;
+                }
+                weightedSize = 0;
+                for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                    readBuffer.set(i, null);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void expireEntries(long now, int limit) {
+            lock.lock();
+            try {
+                int inspected = expireEntries(head, now, limit);
+                if (windowHead != null) {
+                    expireEntries(windowHead, now, limit - inspected);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int expireEntries(Node<K, V> list, long now, int limit) {
+            Node<K, V> node = list.next;
+            int inspected = 0;
+            for (; node != list && inspected < limit; inspected++) {
+                Node<K, V> next = node.next;
+                if (isExpired(node, now)) {
+                    unlinkAndRemove(node);
+                    statsCounter.recordExpiration();
+                    logger.debug("Удаление просроченного элемента из кэша. Ключ: {}",
+                            node.key);
+                }
+                node = next;
+            }
+            return inspected;
+        }
+
+        private void drainReadBuffer() {
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                Node<K, V> node = readBuffer.getAndSet(i, null);
+                if (node != null && node.isLinked()) {
+                    moveToTail(node);
+                    if (sketch != null) {
+                        sketch.increment(node.hash);
+                    }
+                }
+            }
+        }
+
+        private void unlinkAndRemove(Node<K, V> node) {
+            detach(node);
+            if (dependencies != null) {
+                dependencies.unregister(CacheUtil.this, node.key);
+            }
+        }
+
+        private void detach(Node<K, V> node) {
+            unlink(node);
+            data.remove(node.key, node);
+            weightedSize -= node.weight;
+            if (node.inWindow) {
+                windowWeight -= node.weight;
+            }
+        }
+
+        private void linkLast(Node<K, V> node) {
+            Node<K, V> list = node.inWindow ? windowHead : head;
+            Node<K, V> last = list.prev;
+            node.prev = last;
+            node.next = list;
+            last.next = node;
+            list.prev = node;
+        }
+
+        private void unlink(Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+
+        private void moveToTail(Node<K, V> node) {
+            Node<K, V> list = node.inWindow ? windowHead : head;
+            if (list.prev != node) {
+                unlink(node);
+                linkLast(node);
+            }
+        }
+    }
+
+    public static final class Builder<K, V> {
+        private String name = "cache";
+        private long maximumWeight;
+        private long minimumWeight;
+        private long maximumWeightLimit;
+        private Weigher<? super K, ? super V> weigher = Weigher.singleton();
+        private int concurrencyLevel = Runtime.getRuntime().availableProcessors();
+        private long expireAfterWriteNanos;
+        private long expireAfterAccessNanos;
+        private long expireAbsentAfterNanos;
+        private long refreshAfterWriteNanos;
+        private int refreshMinReads;
+        private Executor refreshExecutor;
+        private LongSupplier ticker = System::nanoTime;
+        private DependencyIndex dependencies;
+        private BiFunction<? super K, ? super V, ? extends Collection<CacheTag>> tagger;
+        private long offHeapMaximumBytes;
+        private Codec<V> offHeapCodec;
+        private Path offHeapFile;
+        private boolean transactional;
+        private boolean intKeys;
+        private boolean tinyLfu;
+
+        private Builder() {}
+
+        public Builder<K, V> name(String name) {
+            this.name = Objects.requireNonNull(name);
+            return this;
+        }
+
+        public Builder<K, V> maximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        /**
+         * Разрешает менять бюджет через resize в пределах [minimumWeight, maximumWeightLimit];
+         * maximumWeight задаёт начальный бюджет. Кэш при этом запоминает недавно
+         * вытесненные ключи, чтобы оценить пользу от увеличения.
+         */
+        public Builder<K, V> resizable(long minimumWeight, long maximumWeightLimit) {
+            if (minimumWeight <= 0 || minimumWeight > maximumWeightLimit) {
+                throw new IllegalArgumentException("Invalid cache weight bounds: ["
+                        + minimumWeight + ", " + maximumWeightLimit + "]");
+            }
+            this.minimumWeight = minimumWeight;
+            this.maximumWeightLimit = maximumWeightLimit;
+            return this;
+        }
+
+        public Builder<K, V> weigher(Weigher<? super K, ? super V> weigher) {
+            this.weigher = Objects.requireNonNull(weigher);
+            return this;
+        }
+
+        public Builder<K, V> concurrencyLevel(int concurrencyLevel) {
+            if (concurrencyLevel <= 0) {
+                throw new IllegalArgumentException(
+                        "Concurrency level must be positive: " + concurrencyLevel);
+            }
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        public Builder<K, V> expireAfterWrite(Duration duration) {
+            this.expireAfterWriteNanos = toNanos(duration);
+            return this;
+        }
+
+        public Builder<K, V> expireAfterAccess(Duration duration) {
+            this.expireAfterAccessNanos = toNanos(duration);
+            return this;
+        }
+
+        public Builder<K, V> expireAbsentAfter(Duration duration) {
+            this.expireAbsentAfterNanos = toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Фоновое обновление записей, к которым обратились через getOrLoad не менее
+         * minReads раз и которые старше refreshAfterWrite. Задачи отправляются в executor;
+         * если он отклоняет задачу, обновление откладывается до следующего чтения, поэтому
+         * executor должен быть ограниченным и не блокировать вызывающий поток.
+         */
+        public Builder<K, V> refreshAhead(Duration refreshAfterWrite, int minReads,
+                                          Executor executor) {
+            this.refreshAfterWriteNanos = toNanos(refreshAfterWrite);
+            this.refreshMinReads = Math.max(1, minReads);
+            this.refreshExecutor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        public Builder<K, V> ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker);
+            return this;
+        }
+
+        /**
+         * Регистрирует каждую запись в индексе зависимостей с метками от tagger.
+         * Для отметок об отсутствии tagger получает null вместо значения.
+         * tagger вызывается под блокировкой сегмента и не должен обращаться к базе данных.
+         */
+        public Builder<K, V> dependencies(
+                DependencyIndex dependencies,
+                BiFunction<? super K, ? super V, ? extends Collection<CacheTag>> tagger) {
+            this.dependencies = Objects.requireNonNull(dependencies);
+            this.tagger = Objects.requireNonNull(tagger);
+            return this;
+        }
+
+        /**
+         * Включает второй уровень вне кучи: вытесненные из кучи записи сериализуются
+         * в буфер размером maximumBytes и при обращении переносятся обратно.
+         */
+        public Builder<K, V> offHeap(long maximumBytes, Codec<V> codec) {
+            this.offHeapMaximumBytes = maximumBytes;
+            this.offHeapCodec = Objects.requireNonNull(codec);
+            return this;
+        }
+
+        // Буфер второго уровня отображается в файл вместо direct-памяти
+        public Builder<K, V> offHeapFile(Path file) {
+            this.offHeapFile = file;
+            return this;
+        }
+
+        /**
+         * put и evict внутри пишущей транзакции Spring применяются после её фиксации,
+         * а значения, загруженные в такой транзакции, не сохраняются.
+         */
+        public Builder<K, V> transactional() {
+            this.transactional = true;
+            return this;
+        }
+
+        /**
+         * Хранит записи в таблице с открытой адресацией по int вместо ConcurrentHashMap:
+         * меньше памяти на запись и нет equals при поиске. Только для ключей Integer.
+         */
+        public Builder<K, V> intKeys() {
+            this.intKeys = true;
+            return this;
+        }
+
+        /**
+         * Вытеснение по W-TinyLFU вместо LRU: новые записи вытесняют старые, только
+         * если к ним обращаются чаще. Защищает популярные записи от однократных обходов.
+         */
+        public Builder<K, V> windowTinyLfu() {
+            this.tinyLfu = true;
+            return this;
+        }
+
+        public CacheUtil<K, V> build() {
+            return new CacheUtil<>(this);
+        }
+
+        private static long toNanos(Duration duration) {
+            return duration == null || duration.isZero() || duration.isNegative()
+                    ? 0
+                    : duration.toNanos();
+        }
     }
-}
\ No newline at end of file
+}
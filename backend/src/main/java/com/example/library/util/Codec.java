@@ -0,0 +1,101 @@
+package com.example.library.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+// Преобразование значений кэша в байты для хранения вне кучи
+public interface Codec<V> {
+
+    byte[] encode(V value);
+
+    V decode(byte[] bytes);
+
+    // Стандартная сериализация Java: подходит для сущностей и коллекций, реализующих Serializable
+    static <V> Codec<V> javaSerialization() {
+        return new Codec<>() {
+            @Override
+            public byte[] encode(V value) {
+                if (!(value instanceof Serializable)) {
+                    throw new UncheckedIOException(new NotSerializableException(
+                            value.getClass().getName()));
+                }
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+                try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+                    out.writeObject(value);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return buffer.toByteArray();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V decode(byte[] bytes) {
+                try (ObjectInputStream in = new ObjectInputStream(
+                        new ByteArrayInputStream(bytes))) {
+                    return (V) in.readObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Готовые ответы уже являются байтами; gzip-копия и метки сохраняются вместе с ними:
+     * [длина json][json][длина gzip или -1][gzip][число меток]([тип][id])*.
+     */
+    static Codec<RenderedResponse> renderedResponse() {
+        return new Codec<>() {
+            @Override
+            public byte[] encode(RenderedResponse value) {
+                byte[] gzip = value.gzip();
+                int size = 3 * Integer.BYTES + value.json().length
+                        + (gzip != null ? gzip.length : 0)
+                        + value.tags().size() * (1 + Integer.BYTES);
+                ByteBuffer buffer = ByteBuffer.allocate(size)
+                        .putInt(value.json().length)
+                        .put(value.json())
+                        .putInt(gzip != null ? gzip.length : -1);
+                if (gzip != null) {
+                    buffer.put(gzip);
+                }
+                buffer.putInt(value.tags().size());
+                for (CacheTag tag : value.tags()) {
+                    buffer.put((byte) tag.type().ordinal()).putInt(tag.id());
+                }
+                return buffer.array();
+            }
+
+            @Override
+            public RenderedResponse decode(byte[] bytes) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                byte[] json = new byte[buffer.getInt()];
+                buffer.get(json);
+                int gzipLength = buffer.getInt();
+                byte[] gzip = null;
+                if (gzipLength >= 0) {
+                    gzip = new byte[gzipLength];
+                    buffer.get(gzip);
+                }
+                int tagCount = buffer.getInt();
+                Set<CacheTag> tags = new HashSet<>(tagCount);
+                for (int i = 0; i < tagCount; i++) {
+                    tags.add(new CacheTag(CacheTag.Type.values()[buffer.get()], buffer.getInt()));
+                }
+                return new RenderedResponse(json, gzip, Set.copyOf(tags));
+            }
+        };
+    }
+}
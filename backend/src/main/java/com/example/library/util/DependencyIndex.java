@@ -0,0 +1,167 @@
+package com.example.library.util;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Общий для всех кэшей индекс зависимостей: какие записи каких кэшей содержат данные
+ * сущности с данной меткой. Кэши регистрируют записи сами при сохранении значения
+ * и снимают регистрацию при удалении; одна инвалидация метки удаляет все зависимые
+ * записи во всех кэшах.
+ *
+ * <p>Каждая инвалидация повышает версию своих меток. Загрузка запоминает loadStamp до
+ * обращения к источнику, и кэш отбрасывает значение, если версия любой из его меток
+ * с тех пор выросла: иначе загрузка, зарегистрировавшая метки уже после инвалидации,
+ * оставила бы в кэше устаревший агрегат.
+ */
+public class DependencyIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(DependencyIndex.class);
+    // Метки делят слоты версий по хэшу: совпадение слота лишь отменяет одно сохранение
+    private static final int VERSION_SLOTS = 1024;
+
+    private final ConcurrentHashMap<CacheTag, Set<Dependent<?>>> byTag =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Dependent<?>, Set<CacheTag>> byDependent =
+            new ConcurrentHashMap<>();
+    private final List<Consumer<Set<CacheTag>>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_SLOTS);
+
+    // Заменяет прежние метки записи новыми
+    public <K> void register(CacheUtil<K, ?> cache, K key, Collection<CacheTag> tags) {
+        Dependent<K> dependent = new Dependent<>(cache, key);
+        Set<CacheTag> current = Set.copyOf(tags);
+        Set<CacheTag> previous = byDependent.put(dependent, current);
+        if (previous != null) {
+            for (CacheTag tag : previous) {
+                if (!current.contains(tag)) {
+                    detach(tag, dependent);
+                }
+            }
+        }
+        for (CacheTag tag : current) {
+            byTag.compute(tag, (t, dependents) -> {
+                Set<Dependent<?>> result = dependents != null
+                        ? dependents : ConcurrentHashMap.newKeySet();
+                result.add(dependent);
+                return result;
+            });
+        }
+    }
+
+    public <K> void unregister(CacheUtil<K, ?> cache, K key) {
+        Dependent<K> dependent = new Dependent<>(cache, key);
+        Set<CacheTag> previous = byDependent.remove(dependent);
+        if (previous != null) {
+            previous.forEach(tag -> detach(tag, dependent));
+        }
+    }
+
+    public void unregisterAll(CacheUtil<?, ?> cache) {
+        byDependent.keySet().removeIf(dependent -> dependent.cache() == cache);
+        for (CacheTag tag : byTag.keySet()) {
+            byTag.computeIfPresent(tag, (t, dependents) -> {
+                dependents.removeIf(dependent -> dependent.cache() == cache);
+                return dependents.isEmpty() ? null : dependents;
+            });
+        }
+    }
+
+    // Отметка версий перед загрузкой значения из источника
+    public long loadStamp() {
+        return clock.get();
+    }
+
+    // true, если какую-либо из меток инвалидировали после отметки loadStamp
+    public boolean changedSince(Collection<CacheTag> tags, long stamp) {
+        for (CacheTag tag : tags) {
+            if (versions.get(slot(tag)) > stamp) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void invalidate(CacheTag tag) {
+        invalidate(Set.of(tag));
+    }
+
+    /**
+     * Удаляет из кэшей все записи, зависящие от любой из меток. Удаление идёт через
+     * CacheUtil.evict, поэтому слушатели кэшей (рассылка, зависимые кэши) срабатывают.
+     * В пишущей транзакции метки инвалидируются сразу и ещё раз после фиксации:
+     * записи, загруженные другими потоками до фиксации, тоже удаляются, а слушатели
+     * узнают об инвалидации только после фиксации.
+     */
+    public void invalidate(Collection<CacheTag> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        evictDependents(tags);
+        if (CacheTransactions.isWriteTransactionActive()) {
+            Set<CacheTag> committed = Set.copyOf(tags);
+            CacheTransactions.afterCommit(() -> invalidate(committed));
+            return;
+        }
+
+        Set<CacheTag> invalidated = Set.copyOf(tags);
+        for (Consumer<Set<CacheTag>> listener : listeners) {
+            listener.accept(invalidated);
+        }
+    }
+
+    // Версии повышаются до удаления: запись, зарегистрированная позже, увидит новую версию
+    private void evictDependents(Collection<CacheTag> tags) {
+        long version = clock.incrementAndGet();
+        for (CacheTag tag : tags) {
+            versions.accumulateAndGet(slot(tag), version, Math::max);
+        }
+        Set<Dependent<?>> affected = new HashSet<>();
+        for (CacheTag tag : tags) {
+            Set<Dependent<?>> dependents = byTag.remove(tag);
+            if (dependents != null) {
+                affected.addAll(dependents);
+            }
+        }
+        affected.forEach(Dependent::evict);
+        logger.debug("Инвалидированы метки {}: удалено записей {}", tags, affected.size());
+    }
+
+    // Получает каждую инвалидацию меток, например для рассылки другим экземплярам
+    public void addListener(Consumer<Set<CacheTag>> listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public int dependentCount() {
+        return byDependent.size();
+    }
+
+    private void detach(CacheTag tag, Dependent<?> dependent) {
+        byTag.computeIfPresent(tag, (t, dependents) -> {
+            dependents.remove(dependent);
+            return dependents.isEmpty() ? null : dependents;
+        });
+    }
+
+    private static int slot(CacheTag tag) {
+        int h = tag.hashCode();
+        return (h ^ (h >>> 16)) & (VERSION_SLOTS - 1);
+    }
+
+    private record Dependent<K>(CacheUtil<K, ?> cache, K key) {
+        void evict() {
+            cache.evict(key);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.library.util;
+
+/**
+ * Приблизительная частота обращений к ключам для допуска в кэш (count-min sketch).
+ * Каждый ключ учитывается в четырёх 4-битных счётчиках, частота - минимум из них.
+ * После 10 * (число счётчиков / 16) увеличений все счётчики делятся пополам, поэтому
+ * давняя популярность постепенно забывается. Не потокобезопасен: вызывается под
+ * блокировкой сегмента.
+ */
+final class FrequencySketch {
+
+    private static final int MAX_TABLE_LENGTH = 1 << 12;
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+
+    private final long[] table;
+    private final int sampleSize;
+    private int additions;
+
+    // expectedEntries - сколько записей помещается в сегмент; таблица не больше 32 КБ
+    FrequencySketch(long expectedEntries) {
+        int length = Integer.highestOneBit(
+                (int) Math.max(16, Math.min(MAX_TABLE_LENGTH, expectedEntries)) * 2 - 1);
+        this.table = new long[length];
+        this.sampleSize = 10 * length;
+    }
+
+    int frequency(int hash) {
+        int item = spread(hash);
+        int start = (item & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int depth = 0; depth < 4; depth++) {
+            int offset = (start + depth) << 2;
+            int count = (int) ((table[indexOf(item, depth)] >>> offset) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        int item = spread(hash);
+        int start = (item & 3) << 2;
+        boolean added = false;
+        for (int depth = 0; depth < 4; depth++) {
+            added |= incrementAt(indexOf(item, depth), start + depth);
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    // Счётчик насыщается на 15
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xFL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int item, int depth) {
+        long hash = (item + SEEDS[depth]) * SEEDS[depth];
+        hash += hash >>> 32;
+        return (int) hash & (table.length - 1);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x31848BAB;
+        return h ^ (h >>> 14);
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.library.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Таблица с ключами int для сегмента кэша: открытая адресация с линейным пробированием,
+ * ключи лежат в массиве int, значения - в соседнем массиве ссылок. В отличие
+ * от ConcurrentHashMap не создаёт узла и упакованного ключа на каждую запись.
+ *
+ * <p>Пустой слот - ключ 0 в массиве ключей, поэтому промах читает только массив ключей;
+ * значение для самого ключа 0 хранится в отдельном поле. Удаление сдвигает следующие
+ * записи серии назад вместо пометки слота: удалённые записи не удлиняют поиск
+ * и не требуют периодической перестройки таблицы при вытеснении.
+ *
+ * <p>Изменения выполняются под внешней блокировкой, чтение идёт без блокировки. Слот
+ * может быть переиспользован под другой ключ во время чтения, поэтому найденное значение
+ * проверяется по ключу, который возвращает keyOf. Читатель, попавший на перестроение
+ * таблицы или на сдвиг записи при удалении, может не найти запись - для кэша это
+ * обычный промах.
+ */
+final class IntKeyTable<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final ToIntFunction<? super V> keyOf;
+    private volatile Table table;
+    private volatile Object zeroKeyValue;
+    private volatile int size;
+
+    IntKeyTable(ToIntFunction<? super V> keyOf) {
+        this.keyOf = keyOf;
+        this.table = new Table(MIN_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        if (key == 0) {
+            return (V) zeroKeyValue;
+        }
+        Table t = table;
+        int mask = t.keys.length - 1;
+        for (int i = t.slot(key), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            int k = t.keys[i];
+            if (k == 0) {
+                return null;
+            }
+            if (k == key) {
+                Object value = t.values.get(i);
+                if (value != null && keyOf.applyAsInt((V) value) == key) {
+                    return (V) value;
+                }
+            }
+        }
+        return null;
+    }
+
+    boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    void put(int key, V value) {
+        if (key == 0) {
+            if (zeroKeyValue == null) {
+                size++;
+            }
+            zeroKeyValue = value;
+            return;
+        }
+        Table t = table;
+        int mask = t.keys.length - 1;
+        int i = t.slot(key);
+        while (t.keys[i] != 0) {
+            if (t.keys[i] == key) {
+                t.values.set(i, value);
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        // Значение публикуется раньше ключа: читатель, нашедший ключ, найдёт и значение
+        // (или слот ещё пуст, что для кэша - просто промах)
+        t.values.set(i, value);
+        t.keys[i] = key;
+        size++;
+        // Заполнение не выше трети: при половине промах в среднем проходит 2,5 слота
+        // и обходится дороже, чем в ConcurrentHashMap
+        if (size * 3L > t.keys.length) {
+            rehash(t.keys.length * 2);
+        }
+    }
+
+    // Удаляет запись, только если ключу соответствует именно это значение
+    boolean remove(int key, V value) {
+        if (key == 0) {
+            if (zeroKeyValue == null || zeroKeyValue != value) {
+                return false;
+            }
+            zeroKeyValue = null;
+            size--;
+            return true;
+        }
+        Table t = table;
+        int mask = t.keys.length - 1;
+        int i = t.slot(key);
+        while (t.keys[i] != key) {
+            if (t.keys[i] == 0) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        if (t.values.get(i) != value) {
+            return false;
+        }
+        shiftBack(t, i);
+        size--;
+        return true;
+    }
+
+    // Освобождает слот: записи серии за ним, чей домашний слот не позже освобождённого,
+    // переносятся в него, чтобы поиск по ним не обрывался на пустом слоте
+    private static void shiftBack(Table t, int free) {
+        int mask = t.keys.length - 1;
+        for (int i = (free + 1) & mask; t.keys[i] != 0; i = (i + 1) & mask) {
+            int home = t.slot(t.keys[i]);
+            if (((i - home) & mask) >= ((i - free) & mask)) {
+                t.values.set(free, t.values.get(i));
+                t.keys[free] = t.keys[i];
+                free = i;
+            }
+        }
+        t.keys[free] = 0;
+        t.values.set(free, null);
+    }
+
+    void clear() {
+        table = new Table(MIN_CAPACITY);
+        zeroKeyValue = null;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return table.keys.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<? super V> action) {
+        Object zero = zeroKeyValue;
+        if (zero != null) {
+            action.accept((V) zero);
+        }
+        Table t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            Object value = t.values.get(i);
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    // Новая таблица заполняется целиком и публикуется одной записью в volatile-поле
+    private void rehash(int capacity) {
+        Table old = table;
+        Table fresh = new Table(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.keys.length; j++) {
+            Object value = old.values.get(j);
+            if (value == null) {
+                continue;
+            }
+            int i = fresh.slot(old.keys[j]);
+            while (fresh.keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            fresh.keys[i] = old.keys[j];
+            fresh.values.lazySet(i, value);
+        }
+        table = fresh;
+    }
+
+    private static final class Table {
+        final int[] keys;
+        final AtomicReferenceArray<Object> values;
+        final int shift;
+
+        Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        }
+
+        // Мультипликативное хеширование по Фибоначчи: одно умножение, старшие биты
+        // произведения равномерно разносят и подряд идущие id, и разреженные
+        int slot(int key) {
+            return (key * 0x9E3779B9) >>> shift;
+        }
+    }
+}
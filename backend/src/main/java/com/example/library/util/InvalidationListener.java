@@ -0,0 +1,25 @@
+package com.example.library.util;
+
+// Получает уведомления о явных изменениях кэша (put, evict, clear).
+// Загрузки, вытеснение по ёмкости и истечение срока хранения не сообщаются.
+public interface InvalidationListener<K> {
+
+    void onInvalidate(K key);
+
+    void onInvalidateAll();
+
+    // Зависимый кэш сбрасывается вместе с исходным
+    static <K> InvalidationListener<K> evicting(CacheUtil<? super K, ?> dependent) {
+        return new InvalidationListener<>() {
+            @Override
+            public void onInvalidate(K key) {
+                dependent.evict(key);
+            }
+
+            @Override
+            public void onInvalidateAll() {
+                dependent.clear();
+            }
+        };
+    }
+}
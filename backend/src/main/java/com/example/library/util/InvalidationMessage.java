@@ -0,0 +1,15 @@
+package com.example.library.util;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Пакет инвалидаций для других экземпляров приложения.
+ * keys - ключи, удаляемые из кэша по имени кэша; cleared - кэши, очищаемые целиком;
+ * tags - инвалидированные метки сущностей (CacheTag в виде "book:5").
+ */
+public record InvalidationMessage(String origin,
+                                  Map<String, Set<Integer>> keys,
+                                  Set<String> cleared,
+                                  Set<String> tags) {
+}
@@ -0,0 +1,33 @@
+package com.example.library.util;
+
+import java.util.function.Consumer;
+
+// Канал рассылки сообщений об инвалидации кэшей между экземплярами приложения
+public interface InvalidationTransport extends AutoCloseable {
+
+    void publish(String payload);
+
+    // onGap вызывается, когда сообщения могли быть потеряны (например, при переподключении)
+    void subscribe(Consumer<String> onMessage, Runnable onGap);
+
+    default int maxPayloadBytes() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    default void close() {
+    }
+
+    // Один экземпляр приложения: рассылать некому
+    static InvalidationTransport none() {
+        return new InvalidationTransport() {
+            @Override
+            public void publish(String payload) {
+            }
+
+            @Override
+            public void subscribe(Consumer<String> onMessage, Runnable onGap) {
+            }
+        };
+    }
+}
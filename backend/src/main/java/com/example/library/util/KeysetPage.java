@@ -0,0 +1,53 @@
+package com.example.library.util;
+
+import java.util.List;
+import java.util.function.Function;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Страница выборки по ключу: записи, курсор следующей страницы (null на последней)
+ * и общее число записей, если его запросили.
+ */
+public record KeysetPage<T>(List<T> items, PageCursor next, Long total) {
+
+    public static final String DEFAULT_LIMIT = "20";
+    public static final int MAX_LIMIT = 100;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    // Размер страницы ограничен сверху, чтобы один запрос не выгружал весь каталог
+    public static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * rows - результат запроса с лимитом pageSize + 1: лишняя строка только показывает,
+     * что следующая страница есть, и клиенту не отдаётся.
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int pageSize,
+                                       Function<T, PageCursor> cursorOf, Long total) {
+        if (rows.size() <= pageSize) {
+            return new KeysetPage<>(List.copyOf(rows), null, total);
+        }
+        List<T> items = List.copyOf(rows.subList(0, pageSize));
+        return new KeysetPage<>(items, cursorOf.apply(items.get(pageSize - 1)), total);
+    }
+
+    // currentRequest - адрес текущего запроса; в ссылке на следующую страницу меняется курсор
+    public ResponseEntity<List<T>> toResponseEntity(UriComponentsBuilder currentRequest) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (next != null) {
+            String cursor = next.encode();
+            String nextUri = currentRequest.replaceQueryParam("cursor", cursor)
+                    .build().toUriString();
+            response.header(NEXT_CURSOR_HEADER, cursor)
+                    .header(HttpHeaders.LINK, "<" + nextUri + ">; rel=\"next\"");
+        }
+        if (total != null) {
+            response.header(TOTAL_COUNT_HEADER, Long.toString(total));
+        }
+        return response.body(items);
+    }
+}
@@ -21,7 +21,7 @@ public class LoggingUtil {
 
     @SuppressWarnings({"checkstyle:Indentation", "checkstyle:VariableDeclarationUsageDistance"})
     @Around("controllerMethods()")
-    public Object logMethodExecution(ProceedingJoinPoint joinPoint) {
+    public Object logMethodExecution(ProceedingJoinPoint joinPoint) throws Throwable {
         StopWatch stopWatch = new StopWatch();
         String methodName = joinPoint.getSignature().toShortString();
 
@@ -30,7 +30,7 @@ public class LoggingUtil {
         stopWatch.start();
 
             // Выполняем метод
-            Object result = joinPoint;
+            Object result = joinPoint.proceed();
             stopWatch.stop();
 
             // Логируем успешное выполнение
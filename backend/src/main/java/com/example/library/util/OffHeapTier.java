@@ -0,0 +1,183 @@
+package com.example.library.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Второй уровень кэша вне кучи: сериализованные значения пишутся подряд в кольцевой
+ * буфер (direct или отображённый в файл), в куче остаётся только индекс.
+ * Место освобождается при перезаписи по кругу, поэтому старейшие записи вытесняются
+ * первыми (FIFO); удалённые записи занимают место до следующего круга.
+ */
+final class OffHeapTier<K> {
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final Map<K, Slot<K>> index = new HashMap<>();
+    // Записи в порядке позиции в буфере, включая уже удалённые из индекса
+    private final ArrayDeque<Slot<K>> log = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // Абсолютная позиция записи: растёт монотонно, смещение в буфере - остаток от деления
+    private long writePosition;
+    private long usedBytes;
+    private long evictionCount;
+
+    OffHeapTier(long maximumBytes, Path file) {
+        if (maximumBytes <= 0 || maximumBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "Off-heap size must be between 1 and " + Integer.MAX_VALUE + " bytes: "
+                            + maximumBytes);
+        }
+        this.capacity = (int) maximumBytes;
+        this.buffer = file == null ? ByteBuffer.allocateDirect(capacity) : map(file, capacity);
+    }
+
+    private static ByteBuffer map(Path file, int capacity) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сохраняет значение; sequence - порядковый номер записи в куче. Запись со старым
+     * номером не заменяет более новую: вытеснения из кучи могут прийти не по порядку.
+     */
+    boolean put(K key, byte[] bytes, long sequence, long writeTime, long accessTime) {
+        if (bytes.length > capacity) {
+            return false;
+        }
+        lock.lock();
+        try {
+            Slot<K> existing = index.get(key);
+            if (existing != null && existing.sequence > sequence) {
+                return false;
+            }
+            remove(key);
+
+            int offset = (int) (writePosition % capacity);
+            if (offset + bytes.length > capacity) {
+                // Запись не переносится через конец буфера: хвост пропускается
+                writePosition += capacity - offset;
+                offset = 0;
+            }
+            long end = writePosition + bytes.length;
+            while (!log.isEmpty() && log.peekFirst().position < end - capacity) {
+                Slot<K> overwritten = log.pollFirst();
+                if (index.remove(overwritten.key, overwritten)) {
+                    usedBytes -= overwritten.length;
+                    evictionCount++;
+                }
+            }
+
+            buffer.put(offset, bytes);
+            Slot<K> slot = new Slot<>(key, writePosition, bytes.length, sequence,
+                    writeTime, accessTime);
+            index.put(key, slot);
+            log.addLast(slot);
+            usedBytes += bytes.length;
+            writePosition = end;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Извлекает запись: при продвижении в кучу копия вне кучи больше не нужна
+    Entry take(K key) {
+        lock.lock();
+        try {
+            Slot<K> slot = index.remove(key);
+            if (slot == null) {
+                return null;
+            }
+            usedBytes -= slot.length;
+            byte[] bytes = new byte[slot.length];
+            buffer.get((int) (slot.position % capacity), bytes);
+            return new Entry(bytes, slot.writeTime, slot.accessTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean contains(K key) {
+        lock.lock();
+        try {
+            return index.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void remove(K key) {
+        lock.lock();
+        try {
+            Slot<K> slot = index.remove(key);
+            if (slot != null) {
+                usedBytes -= slot.length;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            index.clear();
+            log.clear();
+            usedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long usedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long evictionCount() {
+        lock.lock();
+        try {
+            return evictionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long maximumBytes() {
+        return capacity;
+    }
+
+    record Entry(byte[] bytes, long writeTime, long accessTime) {
+    }
+
+    private record Slot<K>(K key, long position, int length, long sequence, long writeTime,
+                           long accessTime) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.library.util;
+
+import com.example.library.exception.BadRequestException;
+import com.example.library.exception.ErrorMessages;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в постраничной выборке: значение ключа сортировки и id последней отданной записи.
+ * Клиент получает её непрозрачной строкой base64url и передаёт обратно без изменений.
+ * key равен null, если сортировка идёт только по id.
+ */
+public record PageCursor(String key, int id) {
+
+    private static final char SEPARATOR = ':';
+
+    public static PageCursor of(int id) {
+        return new PageCursor(null, id);
+    }
+
+    // id стоит первым, поэтому ключ может содержать разделитель
+    public String encode() {
+        String raw = key == null ? Integer.toString(id) : id + String.valueOf(SEPARATOR) + key;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token),
+                    StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                return of(Integer.parseInt(raw));
+            }
+            return new PageCursor(raw.substring(separator + 1),
+                    Integer.parseInt(raw.substring(0, separator)));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(ErrorMessages.PAGE_CURSOR_INVALID);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.library.util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Consumer;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+
+/**
+ * Рассылка через PostgreSQL LISTEN/NOTIFY. Публикация идёт через общий пул соединений,
+ * а подписка держит отдельное соединение, чтобы не занимать соединение пула.
+ */
+public class PostgresInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(PostgresInvalidationTransport.class);
+
+    // Ограничение PostgreSQL на размер payload в NOTIFY - 8000 байт
+    private static final int MAX_PAYLOAD_BYTES = 7999;
+    private static final int POLL_TIMEOUT_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String channel;
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public PostgresInvalidationTransport(JdbcTemplate jdbcTemplate, String url,
+                                         String username, String password, String channel) {
+        if (channel == null || !channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid notification channel: " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.channel = channel;
+    }
+
+    @Override
+    public void publish(String payload) {
+        jdbcTemplate.execute("SELECT pg_notify(?, ?)",
+                (PreparedStatementCallback<Boolean>) statement -> {
+                    statement.setString(1, channel);
+                    statement.setString(2, payload);
+                    return statement.execute();
+                });
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<String> onMessage, Runnable onGap) {
+        if (running) {
+            throw new IllegalStateException("Already subscribed to channel " + channel);
+        }
+        running = true;
+        listenerThread = new Thread(() -> listen(onMessage, onGap),
+                "cache-invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    private void listen(Consumer<String> onMessage, Runnable onGap) {
+        boolean listened = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                logger.info("Подписка на канал инвалидации кэша {} установлена", channel);
+                // Сообщения могли быть пропущены только между обрывом и переподключением;
+                // до первой подписки кэши ещё не получали изменений других экземпляров
+                if (listened) {
+                    onGap.run();
+                }
+                listened = true;
+
+                while (running) {
+                    PGNotification[] notifications =
+                            pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        deliver(onMessage, notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Подписка на канал инвалидации кэша {} прервана: {}",
+                        channel, e.getMessage());
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void deliver(Consumer<String> onMessage, String payload) {
+        try {
+            onMessage.accept(payload);
+        } catch (RuntimeException e) {
+            logger.error("Не удалось обработать сообщение об инвалидации кэша: {}",
+                    e.getMessage(), e);
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @Override
+    public int maxPayloadBytes() {
+        return MAX_PAYLOAD_BYTES;
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread = null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.library.util;
+
+import com.example.library.dto.SuggestionDto;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * Поиск подсказок по началу слова. Каждое слово текста подсказки даёт ключ - остаток
+ * текста начиная с этого слова, поэтому "мир" находит и "Война и мир". Ключи хранятся
+ * отсортированными: поиск спускается к первому ключу не меньше префикса и идёт вперёд,
+ * пока ключи с него начинаются.
+ *
+ * <p>Чтение идёт без блокировок. Изменения одной подсказки выполняются под блокировкой
+ * индекса; читатель во время замены может увидеть старые и новые ключи вместе.
+ */
+public final class PrefixIndex {
+
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    // Пробный ключ без подсказки стоит раньше всех записей с тем же ключом
+    private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::key)
+            .thenComparing(Entry::suggestion, Comparator.nullsFirst(
+                    Comparator.comparing(SuggestionDto::type)
+                            .thenComparingInt(SuggestionDto::id)));
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+    // Ключи каждой подсказки для замены и удаления; защищено блокировкой индекса
+    private final Map<Target, List<Entry>> byTarget = new HashMap<>();
+
+    // Заменяет прежние ключи книги или автора ключами нового текста
+    public synchronized void put(SuggestionDto suggestion) {
+        remove(suggestion.type(), suggestion.id());
+        List<Entry> added = new ArrayList<>();
+        for (String key : keysOf(normalize(suggestion.text()))) {
+            Entry entry = new Entry(key, suggestion);
+            entries.add(entry);
+            added.add(entry);
+        }
+        byTarget.put(new Target(suggestion.type(), suggestion.id()), added);
+    }
+
+    public synchronized void remove(SuggestionDto.Type type, int id) {
+        List<Entry> removed = byTarget.remove(new Target(type, id));
+        if (removed != null) {
+            removed.forEach(entries::remove);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        byTarget.clear();
+    }
+
+    public synchronized int size() {
+        return byTarget.size();
+    }
+
+    // Подсказки в порядке ключей, каждая не более одного раза
+    public List<SuggestionDto> find(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Set<SuggestionDto> found = new LinkedHashSet<>();
+        for (Entry entry : entries.tailSet(new Entry(normalized, null))) {
+            if (!entry.key().startsWith(normalized)) {
+                break;
+            }
+            found.add(entry.suggestion());
+            if (found.size() == limit) {
+                break;
+            }
+        }
+        return List.copyOf(found);
+    }
+
+    // Регистр, ё/е и лишние пробелы не влияют на совпадение
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return SPACES.matcher(text.trim()).replaceAll(" ")
+                .toLowerCase(Locale.ROOT)
+                .replace('ё', 'е');
+    }
+
+    private static List<String> keysOf(String text) {
+        List<String> keys = new ArrayList<>();
+        if (text.isEmpty()) {
+            return keys;
+        }
+        keys.add(text);
+        for (int i = text.indexOf(' '); i >= 0; i = text.indexOf(' ', i + 1)) {
+            keys.add(text.substring(i + 1));
+        }
+        return keys;
+    }
+
+    private record Entry(String key, SuggestionDto suggestion) {}
+
+    private record Target(SuggestionDto.Type type, int id) {}
+}
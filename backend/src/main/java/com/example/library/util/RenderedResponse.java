@@ -0,0 +1,73 @@
+package com.example.library.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Готовое тело JSON-ответа. gzip хранится рядом с исходными байтами,
+ * если ответ не меньше порога сжатия, иначе равен null.
+ * tags - метки сущностей, вошедших в ответ.
+ */
+public record RenderedResponse(byte[] json, byte[] gzip, Set<CacheTag> tags) {
+
+    private static final String GZIP = "gzip";
+
+    public static RenderedResponse of(byte[] json, int gzipMinSize) {
+        return of(json, gzipMinSize, Set.of());
+    }
+
+    public static RenderedResponse of(byte[] json, int gzipMinSize, Set<CacheTag> tags) {
+        return new RenderedResponse(json, json.length >= gzipMinSize ? compress(json) : null,
+                Set.copyOf(tags));
+    }
+
+    public int size() {
+        return json.length + (gzip != null ? gzip.length : 0);
+    }
+
+    // Байты отдаются как есть, без повторной сериализации
+    public ResponseEntity<byte[]> toResponseEntity(String acceptEncoding) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip != null && acceptsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(gzip);
+        }
+        return response.body(json);
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim();
+            if (!coding.equalsIgnoreCase(GZIP) && !coding.equals("*")) {
+                continue;
+            }
+            boolean rejected = parts.length > 1
+                    && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            if (!rejected) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] compress(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 2 + 32);
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(buffer)) {
+            gzipStream.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.library.util;
+
+import com.example.library.exception.BadRequestException;
+import com.example.library.exception.ErrorMessages;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Перевод строки поиска в синтаксис tsquery PostgreSQL. Слова через пробел должны
+ * встретиться все, "слова в кавычках" - подряд и в этом порядке, слово* ищется как префикс.
+ * Остальные знаки считаются разделителями, поэтому ввод пользователя не может сломать
+ * разбор запроса на стороне базы.
+ */
+public final class SearchQuery {
+
+    private SearchQuery() {}
+
+    public static String toTsQuery(String input) {
+        List<String> groups = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean quoted = false;
+        String text = input == null ? "" : input;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+                continue;
+            }
+            if (!word.isEmpty()) {
+                words.add(c == '*' ? word + ":*" : word.toString());
+                word.setLength(0);
+            }
+            if (c == '"') {
+                quoted = !quoted;
+                closeGroup(words, groups);
+            } else if (Character.isWhitespace(c) && !quoted) {
+                closeGroup(words, groups);
+            }
+        }
+        closeGroup(words, groups);
+        if (groups.isEmpty()) {
+            throw new BadRequestException(ErrorMessages.SEARCH_QUERY_EMPTY);
+        }
+        return String.join(" & ", groups);
+    }
+
+    // Слова одной группы (фраза или слово с внутренними знаками вроде don't) идут подряд
+    private static void closeGroup(List<String> words, List<String> groups) {
+        if (words.size() == 1) {
+            groups.add(words.get(0));
+        } else if (words.size() > 1) {
+            groups.add("(" + String.join(" <-> ", words) + ")");
+        }
+        words.clear();
+    }
+}
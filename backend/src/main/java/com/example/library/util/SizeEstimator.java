@@ -0,0 +1,95 @@
+package com.example.library.util;
+
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Review;
+import java.util.Collection;
+import org.hibernate.Hibernate;
+
+// Грубая оценка размера объектов в куче (64-bit JVM, сжатые ссылки)
+public final class SizeEstimator {
+
+    private static final long OBJECT_HEADER = 16;
+    private static final long REFERENCE = 4;
+    private static final long STRING_OVERHEAD = 40;
+    private static final long COLLECTION_OVERHEAD = 40;
+
+    private SizeEstimator() {}
+
+    public static long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Book book) {
+            return estimateBook(book, true);
+        }
+        if (value instanceof Author author) {
+            return estimateAuthor(author, true);
+        }
+        if (value instanceof Review review) {
+            return estimateReview(review);
+        }
+        if (value instanceof CharSequence text) {
+            return estimateString(text);
+        }
+        if (value instanceof RenderedResponse response) {
+            return OBJECT_HEADER + 2 * (OBJECT_HEADER + REFERENCE) + response.size();
+        }
+        if (value instanceof byte[] bytes) {
+            return OBJECT_HEADER + bytes.length;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = COLLECTION_OVERHEAD + REFERENCE * collection.size();
+            for (Object element : collection) {
+                size += estimate(element);
+            }
+            return size;
+        }
+        return OBJECT_HEADER;
+    }
+
+    private static long estimateBook(Book book, boolean deep) {
+        long size = OBJECT_HEADER + 4 + 3 * REFERENCE + estimateString(book.getTitle());
+        if (!deep) {
+            return size;
+        }
+        if (isLoaded(book.getAuthors())) {
+            size += COLLECTION_OVERHEAD + REFERENCE * book.getAuthors().size();
+            for (Author author : book.getAuthors()) {
+                size += estimateAuthor(author, false);
+            }
+        }
+        if (isLoaded(book.getReviews())) {
+            size += COLLECTION_OVERHEAD + REFERENCE * book.getReviews().size();
+            for (Review review : book.getReviews()) {
+                size += estimateReview(review);
+            }
+        }
+        return size;
+    }
+
+    private static long estimateAuthor(Author author, boolean deep) {
+        long size = OBJECT_HEADER + 4 + 3 * REFERENCE
+                + estimateString(author.getName()) + estimateString(author.getSurname());
+        if (deep && isLoaded(author.getBooks())) {
+            size += COLLECTION_OVERHEAD + REFERENCE * author.getBooks().size();
+            for (Book book : author.getBooks()) {
+                size += estimateBook(book, false);
+            }
+        }
+        return size;
+    }
+
+    private static long estimateReview(Review review) {
+        return OBJECT_HEADER + 4 + 2 * REFERENCE + estimateString(review.getMessage());
+    }
+
+    private static boolean isLoaded(Collection<?> collection) {
+        return collection != null && Hibernate.isInitialized(collection);
+    }
+
+    private static long estimateString(CharSequence text) {
+        // Кириллица хранится в UTF-16, поэтому считаем по два байта на символ
+        return text == null ? 0 : STRING_OVERHEAD + 2L * text.length();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.library.util;
+
+import java.util.Collection;
+
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    int weigh(K key, V value);
+
+    static <K, V> Weigher<K, V> singleton() {
+        return (key, value) -> 1;
+    }
+
+    static <K, V> Weigher<K, V> elements() {
+        return (key, value) -> value instanceof Collection<?> collection
+                ? Math.max(1, collection.size())
+                : 1;
+    }
+
+    static <K, V> Weigher<K, V> estimatedBytes() {
+        return (key, value) -> (int) Math.min(Integer.MAX_VALUE, SizeEstimator.estimate(value));
+    }
+}
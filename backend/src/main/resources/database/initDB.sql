@@ -1,6 +0,0 @@
-DROP TABLE IF EXISTS book;
--- CREATE TABLE book (
---                       id SERIAL PRIMARY KEY,
---                       title VARCHAR(255) NOT NULL,
---                       author VARCHAR(255) NOT NULL
--- );
\ No newline at end of file
@@ -1,3 +0,0 @@
-INSERT INTO book (title, author) VALUES
-                                     ('Spring Boot in Action', 'Craig Walls'),
-                                     ('Clean Code', 'Robert C. Martin');
\ No newline at end of file
@@ -0,0 +1,24 @@
+-- Схема на момент перехода на миграции. В существующих базах таблицы уже созданы
+-- вручную, такие базы отмечаются этой версией без выполнения скрипта
+-- (spring.flyway.baseline-on-migrate)
+CREATE TABLE author (
+    id      SERIAL PRIMARY KEY,
+    name    VARCHAR(255),
+    surname VARCHAR(255)
+);
+
+CREATE TABLE book (
+    id    SERIAL PRIMARY KEY,
+    title VARCHAR(255)
+);
+
+CREATE TABLE book_author (
+    book_id   INTEGER NOT NULL REFERENCES book (id),
+    author_id INTEGER NOT NULL REFERENCES author (id)
+);
+
+CREATE TABLE review (
+    id      SERIAL PRIMARY KEY,
+    message VARCHAR(255),
+    book_id INTEGER REFERENCES book (id)
+);
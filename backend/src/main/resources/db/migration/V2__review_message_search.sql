@@ -0,0 +1,8 @@
+-- Полнотекстовый поиск по отзывам. Вектор поддерживает сама база как вычисляемый столбец,
+-- приложение его не читает и не пишет. Конфигурация simple: отзывы пишут на разных языках,
+-- поэтому слова не приводятся к основе, а совпадение по началу слова даёт префиксный поиск
+ALTER TABLE review
+    ADD COLUMN message_tsv tsvector
+        GENERATED ALWAYS AS (to_tsvector('simple', coalesce(message, ''))) STORED;
+
+CREATE INDEX review_message_tsv_idx ON review USING GIN (message_tsv);
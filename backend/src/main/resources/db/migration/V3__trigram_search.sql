@@ -0,0 +1,10 @@
+-- Нечёткий поиск по названию книги и имени автора: операторы pg_trgm (%, similarity)
+-- идут через GIN-индексы. Сравнение по триграммам не зависит от регистра, поэтому
+-- индексы строятся по самим столбцам. Выражение в индексе авторов должно совпадать
+-- с выражением в запросе BookRepository.searchFuzzy
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX book_title_trgm_idx ON book USING GIN (title gin_trgm_ops);
+
+CREATE INDEX author_full_name_trgm_idx ON author
+    USING GIN ((name || ' ' || surname) gin_trgm_ops);
@@ -0,0 +1,19 @@
+-- Индексы под запросы репозиториев. Наличие и использование каждого проверяет
+-- RepositoryQueryPlanTest (EXPLAIN на заполненной базе)
+
+-- Отзывы книги: findByBookId, findRowsByBookIds, загрузка отзывов с книгой
+CREATE INDEX review_book_id_idx ON review (book_id);
+
+-- Связи книг и авторов в обе стороны; второй столбец позволяет читать только индекс
+CREATE INDEX book_author_book_id_idx ON book_author (book_id, author_id);
+CREATE INDEX book_author_author_id_idx ON book_author (author_id, book_id);
+
+-- findByNameAndSurname при каждом создании книги и автора
+CREATE INDEX author_name_surname_idx ON author (name, surname);
+
+-- findBooksByAuthorNameAndSurname сравнивает имена без учёта регистра
+CREATE INDEX author_lower_name_surname_idx ON author (LOWER(name), LOWER(surname));
+
+-- findByTitle и страницы каталога и авторов по названию и фамилии (ORDER BY ..., id)
+CREATE INDEX book_title_id_idx ON book (title, id);
+CREATE INDEX author_surname_id_idx ON author (surname, id);
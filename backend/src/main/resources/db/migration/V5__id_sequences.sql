@@ -0,0 +1,7 @@
+-- Hibernate берёт id из последовательностей блоками по allocationSize = 50 (оптимизатор
+-- pooled): nextval возвращает верхнюю границу блока, и шаг последовательности должен
+-- совпадать с размером блока. Значения по умолчанию столбцов остаются: вставка в обход
+-- приложения забирает целый блок, и пересечения с id приложения не возникает
+ALTER SEQUENCE author_id_seq INCREMENT BY 50;
+ALTER SEQUENCE book_id_seq INCREMENT BY 50;
+ALTER SEQUENCE review_id_seq INCREMENT BY 50;
@@ -0,0 +1,195 @@
+package com.example.library;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Review;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.ReviewRepository;
+import com.example.library.service.CacheWarmupService;
+import com.example.library.service.VisitCounterService;
+import com.example.library.util.CacheUtil;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Число SQL-запросов на каждый читающий эндпоинт не должно зависеть от размера данных:
+ * рост значит, что план выборки сломан и вернулись N+1 или лишние соединения.
+ * Кэш второго уровня выключен, кэши приложения очищаются перед каждым запросом.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:fetch-plans;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.flyway.enabled=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "library.cache.adaptive.enabled=false",
+        "library.cache.invalidation.transport=none",
+        "library.cache.warmup.file=build/tmp/fetch-plans/hot-keys.json"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FetchPlanQueryCountTest {
+
+    private static final int BOOKS = 6;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private ReviewRepository reviewRepository;
+    @Autowired
+    private List<CacheUtil<?, ?>> caches;
+    @Autowired
+    private VisitCounterService visitCounterService;
+    @Autowired
+    private CacheWarmupService cacheWarmupService;
+
+    private Statistics statistics;
+    private Book book;
+    private Author author;
+
+    // У каждой книги два автора и два отзыва, у каждого автора несколько книг
+    @BeforeAll
+    void createCatalog() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Author> authors = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Author created = new Author();
+                created.setName("Name");
+                created.setSurname("Surname" + i);
+                authors.add(authorRepository.save(created));
+            }
+            for (int i = 0; i < BOOKS; i++) {
+                Book created = new Book();
+                created.setTitle("Title " + i);
+                created.setAuthors(new ArrayList<>(List.of(authors.get(i % 3),
+                        authors.get((i + 1) % 3))));
+                created = bookRepository.save(created);
+                for (int j = 0; j < 2; j++) {
+                    Review review = new Review();
+                    review.setMessage("Review " + j + " of book " + i);
+                    review.setBook(created);
+                    reviewRepository.save(review);
+                }
+                if (book == null) {
+                    book = created;
+                }
+            }
+            author = authors.get(0);
+        });
+    }
+
+    @BeforeEach
+    void resetCachesAndCounters() {
+        caches.forEach(CacheUtil::clear);
+        statistics.clear();
+    }
+
+    @Test
+    void bookDetail_AuthorsJoinedAndReviewsInSecondQuery() throws Exception {
+        assertEquals(2, queriesFor("/books/" + book.getId()));
+    }
+
+    @Test
+    void bookList_QueryCountDoesNotDependOnPageSize() throws Exception {
+        assertEquals(3, queriesFor("/books?limit=2"));
+        assertEquals(3, queriesFor("/books?sort=title&limit=" + BOOKS));
+        assertEquals(4, queriesFor("/books?limit=" + BOOKS + "&withTotal=true"));
+    }
+
+    @Test
+    void authorList_LoadsNoCollections() throws Exception {
+        assertEquals(1, queriesFor("/authors?limit=" + BOOKS));
+    }
+
+    @Test
+    void authorDetail_LoadsNoCollections() throws Exception {
+        assertEquals(1, queriesFor("/authors/" + author.getId()));
+    }
+
+    @Test
+    void authorBooks_LoadsBooksWithAuthorsAndReviewsInBatches() throws Exception {
+        assertEquals(4, queriesFor("/authors/" + author.getId() + "/books"));
+    }
+
+    // /books/contain не проверяется: полнотекстовый поиск есть только в PostgreSQL
+    @Test
+    void search_LoadsCollectionsForAllFoundBooksAtOnce() throws Exception {
+        assertEquals(2, queriesFor("/books/search/by-title?title=" + book.getTitle()));
+        assertEquals(3, queriesFor("/books/search/by-author?name=Name&surname="
+                + author.getSurname()));
+    }
+
+    @Test
+    void export_StreamsCatalogWithCollectionsPerChunk() throws Exception {
+        MvcResult started = mockMvc.perform(get("/books").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(BOOKS, body.lines().count());
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    // Прогрев после перезапуска: записи загружены тем же планом, что и при чтении,
+    // поэтому ответ идёт из кэша без запросов и без догрузки ленивых коллекций
+    @Test
+    void warmedUpDetails_ServedFromCacheWithoutQueries() throws Exception {
+        visitCounterService.incrementCounter("/books/" + book.getId());
+        visitCounterService.incrementCounter("/authors/" + author.getId());
+        cacheWarmupService.stop();
+        caches.forEach(CacheUtil::clear);
+        cacheWarmupService.run(new DefaultApplicationArguments());
+        statistics.clear();
+
+        mockMvc.perform(get("/books/" + book.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/authors/" + author.getId())).andExpect(status().isOk());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    private long queriesFor(String uri) throws Exception {
+        caches.forEach(CacheUtil::clear);
+        statistics.clear();
+        mockMvc.perform(get(uri)).andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+}
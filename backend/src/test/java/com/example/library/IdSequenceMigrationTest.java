@@ -0,0 +1,183 @@
+package com.example.library;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Review;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.ReviewRepository;
+import com.example.library.service.SuggestService;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.sql.DataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Переход на блоки id (V5) в базе, созданной до миграций: схема V1 заполняется вставками
+ * через значения по умолчанию, последовательности уходят вперёд максимального id
+ * (откаты транзакций) и не кратны шагу 50. Затем Flyway отмечает базу версией 1 и
+ * выполняет V2-V5, после чего приложение и вставки в обход него пишут одновременно.
+ * Новые id не должны пересекаться ни со старыми, ни друг с другом.
+ *
+ * <p>Интеграционный тест, запускается вручную на PostgreSQL с pg_trgm: DB_URL,
+ * DB_USERNAME, DB_PASSWORD. Без DB_URL (обычная сборка) тест пропускается.
+ */
+@SpringBootTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.show-sql=false",
+        "library.cache.invalidation.transport=none",
+        "library.cache.warmup.enabled=false"
+})
+@EnabledIfEnvironmentVariable(named = "DB_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IdSequenceMigrationTest {
+
+    private static final String SCHEMA = "sequence_test_" + Long.toHexString(System.nanoTime());
+    private static final int OLD_ROWS = 1_234;
+    // Значения последовательностей до миграции: впереди OLD_ROWS и не кратны шагу
+    private static final Map<String, Integer> OLD_SEQUENCE_VALUES =
+            Map.of("author", 1_317, "book", 1_303, "review", 1_349);
+    private static final int WRITERS = 4;
+    private static final int BOOKS_PER_WRITER = 300;
+    private static final int SQL_ROWS = 200;
+
+    // Строит индекс подсказок при старте, когда таблиц ещё нет
+    @MockBean
+    private SuggestService suggestService;
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private ReviewRepository reviewRepository;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void temporarySchema(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.hikari.connection-init-sql",
+                () -> "SET search_path TO " + SCHEMA + ", public");
+        registry.add("spring.jpa.properties.hibernate.default_schema", () -> SCHEMA);
+    }
+
+    // База в состоянии до миграций: таблицы V1 созданы вручную, id выдаёт SERIAL
+    @BeforeAll
+    void createLegacySchema() throws Exception {
+        jdbcTemplate.execute("CREATE SCHEMA " + SCHEMA);
+        jdbcTemplate.execute(new ClassPathResource("db/migration/V1__baseline.sql")
+                .getContentAsString(StandardCharsets.UTF_8));
+        jdbcTemplate.update("INSERT INTO author (name, surname)"
+                + " SELECT 'Old', 'Author' || i FROM generate_series(1, ?) i", OLD_ROWS);
+        jdbcTemplate.update("INSERT INTO book (title)"
+                + " SELECT 'Old book ' || i FROM generate_series(1, ?) i", OLD_ROWS);
+        jdbcTemplate.update("INSERT INTO review (message, book_id)"
+                + " SELECT 'Old review ' || i, i FROM generate_series(1, ?) i", OLD_ROWS);
+        OLD_SEQUENCE_VALUES.forEach((table, value) -> jdbcTemplate.queryForObject(
+                "SELECT setval(?, ?)", Long.class, table + "_id_seq", value));
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(SCHEMA)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+    }
+
+    @AfterAll
+    void dropSchema() {
+        jdbcTemplate.execute("DROP SCHEMA " + SCHEMA + " CASCADE");
+    }
+
+    @Test
+    void migratedSequences_AppAndSqlInserts_DoNotReuseIds() {
+        assertEquals(List.of("1", "2", "3", "4", "5"), jdbcTemplate.queryForList(
+                "SELECT version FROM flyway_schema_history ORDER BY installed_rank",
+                String.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+        try {
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int writer = 0; writer < WRITERS; writer++) {
+                int first = writer * BOOKS_PER_WRITER;
+                writes.add(CompletableFuture.runAsync(() -> saveBooks(first), executor));
+            }
+            writes.add(CompletableFuture.runAsync(this::insertWithDefaults, executor));
+            // Повторяющийся id дал бы нарушение первичного ключа в одной из записей
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        int expected = OLD_ROWS + WRITERS * BOOKS_PER_WRITER + SQL_ROWS;
+        OLD_SEQUENCE_VALUES.forEach((table, value) -> {
+            assertEquals(50, jdbcTemplate.queryForObject("SELECT increment_by FROM pg_sequences"
+                    + " WHERE schemaname = ? AND sequencename = ?", Integer.class,
+                    SCHEMA, table + "_id_seq"), table);
+            assertEquals(expected, jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM " + table, Integer.class), table);
+            // Старые строки на месте, новые получили id после прежнего значения
+            assertEquals(OLD_ROWS, jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM " + table + " WHERE id <= ?", Integer.class, value),
+                    table);
+        });
+    }
+
+    // Книга с новым автором и отзывом: id всех трёх берутся из блоков Hibernate
+    private void saveBooks(int first) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int i = first; i < first + BOOKS_PER_WRITER; i++) {
+            int n = i;
+            transaction.executeWithoutResult(status -> {
+                Author author = new Author();
+                author.setName("New");
+                author.setSurname("Author" + n);
+                Book book = new Book();
+                book.setTitle("New book " + n);
+                book.setAuthors(new ArrayList<>(List.of(author)));
+                Book saved = bookRepository.save(book);
+                Review review = new Review();
+                review.setMessage("New review " + n);
+                review.setBook(saved);
+                reviewRepository.save(review);
+            });
+        }
+    }
+
+    // Вставки в обход приложения берут id из тех же последовательностей по умолчанию
+    private void insertWithDefaults() {
+        for (int i = 0; i < SQL_ROWS; i++) {
+            jdbcTemplate.update("INSERT INTO author (name, surname) VALUES ('Sql', ?)",
+                    "Author" + i);
+            Integer bookId = jdbcTemplate.queryForObject(
+                    "INSERT INTO book (title) VALUES (?) RETURNING id", Integer.class,
+                    "Sql book " + i);
+            jdbcTemplate.update("INSERT INTO review (message, book_id) VALUES (?, ?)",
+                    "Sql review " + i, bookId);
+        }
+    }
+}
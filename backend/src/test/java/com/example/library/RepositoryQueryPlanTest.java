@@ -0,0 +1,303 @@
+package com.example.library;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.library.model.Book;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.ReviewRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Планы запросов репозиториев на заполненной базе: ни один запрос не должен читать
+ * большие таблицы последовательным сканированием. Схема создаётся миграциями во временной
+ * схеме и удаляется после теста. Каждый вызов репозитория выполняется по-настоящему,
+ * его SQL с параметрами перехватывается и повторяется через EXPLAIN. Выгрузка всего
+ * каталога (streamAll) и count() читают таблицу целиком по назначению и не проверяются.
+ *
+ * <p>Интеграционный тест, запускается вручную на PostgreSQL с pg_trgm: DB_URL,
+ * DB_USERNAME, DB_PASSWORD. Без DB_URL (обычная сборка) тест пропускается.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "library.cache.adaptive.enabled=false",
+        "library.cache.invalidation.transport=none",
+        "library.cache.warmup.enabled=false"
+})
+@EnabledIfEnvironmentVariable(named = "DB_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RepositoryQueryPlanTest {
+
+    private static final String SCHEMA = "plan_test_" + Long.toHexString(System.nanoTime());
+    private static final Set<String> LARGE_TABLES =
+            Set.of("book", "author", "book_author", "review");
+    private static final int BOOKS = 20_000;
+    // На меньшей таблице авторов нечёткий поиск по длинной строке дешевле без индекса
+    private static final int AUTHORS = 20_000;
+    private static final int REVIEWS = 60_000;
+
+    private static final List<Captured> captured = new CopyOnWriteArrayList<>();
+    private static volatile boolean capturing;
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private ReviewRepository reviewRepository;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String title;
+    private String authorName;
+    private String authorSurname;
+
+    @DynamicPropertySource
+    static void temporarySchema(DynamicPropertyRegistry registry) {
+        registry.add("spring.flyway.schemas", () -> SCHEMA);
+        registry.add("spring.datasource.hikari.connection-init-sql",
+                () -> "SET search_path TO " + SCHEMA + ", public");
+        registry.add("spring.jpa.properties.hibernate.default_schema", () -> SCHEMA);
+    }
+
+    // Книги и авторы с разными названиями и фамилиями, у книги два автора и три отзыва
+    @BeforeAll
+    void seed() {
+        // id задаются явно: последовательности идут с шагом 50 (блоки Hibernate)
+        jdbcTemplate.update("INSERT INTO author (id, name, surname) SELECT i, 'Name' || i,"
+                + " 'Surname' || md5(i::text) FROM generate_series(1, ?) i", AUTHORS);
+        jdbcTemplate.update("INSERT INTO book (id, title) SELECT i, 'Book ' || md5(i::text)"
+                + " FROM generate_series(1, ?) i", BOOKS);
+        jdbcTemplate.update("INSERT INTO book_author (book_id, author_id)"
+                + " SELECT b.id, 1 + (b.id * 7 + k) % ? FROM book b, generate_series(0, 1) k",
+                AUTHORS);
+        jdbcTemplate.update("INSERT INTO review (id, message, book_id)"
+                + " SELECT i, 'review ' || i || ' word' || (i % 5000), 1 + i % ?"
+                + " FROM generate_series(1, ?) i", BOOKS, REVIEWS);
+        // VACUUM переносит в GIN-индексы накопленный при вставке список ожидания:
+        // иначе планировщик считает их дорогими и выбирает сканирование таблицы
+        jdbcTemplate.execute("VACUUM ANALYZE book, author, book_author, review");
+
+        title = jdbcTemplate.queryForObject("SELECT title FROM book WHERE id = 42",
+                String.class);
+        Map<String, Object> author = jdbcTemplate.queryForMap(
+                "SELECT name, surname FROM author WHERE id = 17");
+        authorName = (String) author.get("name");
+        authorSurname = (String) author.get("surname");
+    }
+
+    @AfterAll
+    void dropSchema() {
+        jdbcTemplate.execute("DROP SCHEMA " + SCHEMA + " CASCADE");
+    }
+
+    Stream<Arguments> repositoryCalls() {
+        List<Integer> bookIds = IntStream.rangeClosed(100, 119).boxed().toList();
+        String misspelledTitle = title.substring(0, title.length() - 2);
+        return Stream.of(
+                call("Book.findById", () -> bookRepository.findById(42)),
+                call("Book.findAllById", () -> bookRepository.findAllById(bookIds)),
+                call("Book.findByTitle", () -> bookRepository.findByTitle(title)),
+                call("Book.findDetailById", () -> bookRepository.findDetailById(42)),
+                call("Book.findDetailByIdIn", () -> bookRepository.findDetailByIdIn(bookIds)),
+                call("Book.fetchReviews", () -> {
+                    List<Book> books = bookRepository.findAllById(bookIds);
+                    captured.clear();
+                    bookRepository.fetchReviews(books);
+                }),
+                call("Book.findByAuthorId", () -> bookRepository.findByAuthorId(17)),
+                call("Book.searchByReviewMessage",
+                        () -> bookRepository.searchByReviewMessage("word42", 20, 0)),
+                call("Book.searchFuzzy", () -> {
+                    bookRepository.setSimilarityThreshold(0.3);
+                    bookRepository.searchFuzzy(misspelledTitle, 20, 0);
+                }),
+                call("Book.findBooksByAuthorNameAndSurname",
+                        () -> bookRepository.findBooksByAuthorNameAndSurname(
+                                authorName.toUpperCase(), authorSurname)),
+                call("Book.findAuthorRows", () -> bookRepository.findAuthorRows(bookIds)),
+                call("Book.findPageById",
+                        () -> bookRepository.findPageById(BOOKS / 2, Limit.of(21))),
+                call("Book.findFirstPageByTitle",
+                        () -> bookRepository.findFirstPageByTitle(Limit.of(21))),
+                call("Book.findPageByTitle",
+                        () -> bookRepository.findPageByTitle(title, 42, Limit.of(21))),
+                call("Author.findById", () -> authorRepository.findById(17)),
+                call("Author.findByNameAndSurname",
+                        () -> authorRepository.findByNameAndSurname(authorName, authorSurname)),
+                call("Author.findByNameInAndSurnameIn",
+                        () -> authorRepository.findByNameInAndSurnameIn(
+                                List.of(authorName, "Name1"), List.of(authorSurname))),
+                call("Author.findWithBooksById", () -> authorRepository.findWithBooksById(17)),
+                call("Author.findBookIdRows", () -> authorRepository.findBookIdRows(17)),
+                call("Author.findBookIdRowsByIdIn",
+                        () -> authorRepository.findBookIdRowsByIdIn(List.of(17, 18, 19))),
+                call("Author.findPageById",
+                        () -> authorRepository.findPageById(AUTHORS / 2, Limit.of(21))),
+                call("Author.findFirstPageBySurname",
+                        () -> authorRepository.findFirstPageBySurname(Limit.of(21))),
+                call("Author.findPageBySurname", () -> authorRepository.findPageBySurname(
+                        authorSurname, 17, Limit.of(21))),
+                call("Review.findByBookId", () -> reviewRepository.findByBookId(42)),
+                call("Review.findRowsByBookIds",
+                        () -> reviewRepository.findRowsByBookIds(bookIds)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryCalls")
+    void repositoryQuery_DoesNotScanLargeTables(String name, Runnable query) throws Exception {
+        captured.clear();
+        capturing = true;
+        try {
+            new TransactionTemplate(transactionManager)
+                    .executeWithoutResult(status -> query.run());
+        } finally {
+            capturing = false;
+        }
+
+        assertFalse(captured.isEmpty(), name + ": запрос не дошёл до базы");
+        for (Captured statement : captured) {
+            List<String> scans = new ArrayList<>();
+            collectSeqScans(explain(statement).get(0).get("Plan"), scans);
+            assertTrue(scans.isEmpty(), name + ": Seq Scan по " + scans + "\n" + statement.sql());
+        }
+    }
+
+    // Параметры исходного запроса повторяются теми же вызовами set* на EXPLAIN
+    private JsonNode explain(Captured statement) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement explain = connection.prepareStatement(
+                     "EXPLAIN (FORMAT JSON) " + statement.sql())) {
+            for (Binding binding : statement.bindings()) {
+                binding.setter().invoke(explain, binding.args());
+            }
+            try (ResultSet plan = explain.executeQuery()) {
+                plan.next();
+                return objectMapper.readTree(plan.getString(1));
+            }
+        }
+    }
+
+    private static void collectSeqScans(JsonNode node, List<String> scans) {
+        String relation = node.path("Relation Name").asText();
+        if ("Seq Scan".equals(node.path("Node Type").asText())
+                && LARGE_TABLES.contains(relation)) {
+            scans.add(relation);
+        }
+        node.path("Plans").forEach(child -> collectSeqScans(child, scans));
+    }
+
+    private static Arguments call(String name, Runnable query) {
+        return Arguments.of(name, query);
+    }
+
+    private record Captured(String sql, List<Binding> bindings) {}
+
+    private record Binding(Method setter, Object[] args) {}
+
+    // Пул соединений оборачивается так, чтобы видеть SQL и параметры каждого запроса
+    @TestConfiguration
+    static class StatementCapture {
+
+        @Bean
+        static BeanPostProcessor capturingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? capture(dataSource) : bean;
+                }
+            };
+        }
+
+        private static DataSource capture(DataSource dataSource) {
+            return proxy(DataSource.class, (proxy, method, args) -> {
+                Object result = invoke(dataSource, method, args);
+                return result instanceof Connection connection ? capture(connection) : result;
+            });
+        }
+
+        private static Connection capture(Connection connection) {
+            return proxy(Connection.class, (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                if (method.getName().equals("prepareStatement")
+                        && result instanceof PreparedStatement statement) {
+                    return capture(statement, (String) args[0]);
+                }
+                return result;
+            });
+        }
+
+        private static PreparedStatement capture(PreparedStatement statement, String sql) {
+            List<Binding> bindings = new ArrayList<>();
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2
+                        && args[0] instanceof Integer) {
+                    bindings.add(new Binding(method, args.clone()));
+                } else if (name.equals("clearParameters")) {
+                    bindings.clear();
+                } else if (name.startsWith("execute") && capturing) {
+                    captured.add(new Captured(sql, List.copyOf(bindings)));
+                }
+                return invoke(statement, method, args);
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(StatementCapture.class.getClassLoader(),
+                    new Class<?>[] {type}, handler));
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args)
+                throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,19 +1,26 @@
 package com.example.library.service;
 
+import com.example.library.dto.AuthorDto;
 import com.example.library.exception.*;
 import com.example.library.model.Author;
 import com.example.library.model.Book;
 import com.example.library.repository.AuthorRepository;
 import com.example.library.repository.BookRepository;
+import com.example.library.util.CacheTag;
 import com.example.library.util.CacheUtil;
+import com.example.library.util.DependencyIndex;
+import com.example.library.util.KeysetPage;
+import com.example.library.util.PageCursor;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.util.*;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,7 +37,15 @@ class AuthorServiceTest {
     @Mock
     private CacheUtil<Integer, Author> authorCacheId;
 
-    @InjectMocks
+    @Mock
+    private DependencyIndex cacheDependencies;
+
+    @Mock
+    private SuggestService suggestService;
+
+    @Mock
+    private EntityManager entityManager;
+
     private AuthorService authorService;
 
     private Author author;
@@ -38,6 +53,14 @@ class AuthorServiceTest {
 
     @BeforeEach
     void setUp() {
+        // Кэши одного типа передаются явно: @InjectMocks не различает их по generic-параметрам
+        authorService = new AuthorService(authorRepository, bookRepository,
+                authorCacheId, cacheDependencies, suggestService, new BulkWriter(entityManager));
+        // Загрузка через кэш делегируется переданному загрузчику
+        lenient().when(authorCacheId.getOrLoad(anyInt(), any())).thenAnswer(invocation ->
+                invocation.<Function<Integer, Author>>getArgument(1)
+                        .apply(invocation.getArgument(0)));
+
         author = new Author();
         author.setId(1);
         author.setName("John");
@@ -61,6 +84,7 @@ class AuthorServiceTest {
         assertNotNull(result);
         assertEquals("John", result.getName());
         verify(authorCacheId).put(1, author);
+        verify(cacheDependencies).invalidate(CacheTag.book(1));
     }
 
     @Test
@@ -109,14 +133,15 @@ class AuthorServiceTest {
     void createBulk_ValidAuthors_ReturnsCreatedAuthors() {
         List<Author> authors = List.of(author);
         when(bookRepository.findById(1)).thenReturn(Optional.of(book));
-        when(authorRepository.findByNameAndSurname("John", "Doe")).thenReturn(null);
+        when(authorRepository.findExistingByFullName(authors)).thenReturn(new HashMap<>());
         when(authorRepository.save(any(Author.class))).thenReturn(author);
 
         List<Author> result = authorService.createBulk(authors, 1);
 
         assertNotNull(result);
         assertEquals(1, result.size());
-        verify(authorCacheId).put(1, author);
+        verify(authorCacheId).evict(1);
+        verify(authorCacheId, never()).put(anyInt(), any());
     }
 
     @Test
@@ -126,26 +151,25 @@ class AuthorServiceTest {
 
     @Test
     void findById_ExistingId_ReturnsAuthor() {
-        when(authorCacheId.get(1)).thenReturn(null);
-        when(authorRepository.findById(1)).thenReturn(Optional.of(author));
+        when(authorRepository.findWithBookIdsById(1)).thenReturn(Optional.of(author));
 
         Author result = authorService.findById(1);
 
         assertNotNull(result);
         assertEquals("John", result.getName());
-        verify(authorCacheId).put(1, author);
+        verify(authorCacheId).getOrLoad(eq(1), any());
     }
 
     @Test
     void findById_NonExistingId_ThrowsResourceNotFoundException() {
-        when(authorCacheId.get(1)).thenReturn(null);
-        when(authorRepository.findById(1)).thenReturn(Optional.empty());
+        when(authorRepository.findWithBookIdsById(1)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> authorService.findById(1));
     }
 
     @Test
     void update_ValidAuthor_ReturnsUpdatedAuthor() {
+        author.getBooks().add(book);
         when(authorRepository.findById(1)).thenReturn(Optional.of(author));
         when(authorRepository.save(any(Author.class))).thenReturn(author);
 
@@ -157,17 +181,21 @@ class AuthorServiceTest {
 
         assertNotNull(result);
         assertEquals("Jane", result.getName());
-        verify(authorCacheId).put(1, author);
+        verify(authorCacheId).evict(1);
+        verify(authorCacheId, never()).put(anyInt(), any());
+        // Книги с этим автором помечены им и сбрасываются одной инвалидацией
+        verify(cacheDependencies).invalidate(CacheTag.author(1));
     }
 
     @Test
     void delete_ExistingAuthor_ReturnsTrue() {
-        when(authorRepository.findById(1)).thenReturn(Optional.of(author));
+        when(authorRepository.findWithBooksById(1)).thenReturn(Optional.of(author));
 
         boolean result = authorService.delete(1);
 
         assertTrue(result);
-        verify(authorCacheId).evict(1);
+        verify(cacheDependencies).invalidate(argThat((Collection<CacheTag> tags) ->
+                tags.contains(CacheTag.author(1))));
     }
 
     @Test
@@ -180,6 +208,19 @@ class AuthorServiceTest {
         assertEquals(1, result.size());
     }
 
+    @Test
+    void readPage_ById_ClampsLimitAndStartsAfterCursor() {
+        AuthorDto found = new AuthorDto(8, "John", "Doe");
+        when(authorRepository.findPageById(7, Limit.of(KeysetPage.MAX_LIMIT + 1)))
+                .thenReturn(List.of(found));
+
+        KeysetPage<AuthorDto> page = authorService.readPage("id", PageCursor.of(7).encode(),
+                10_000, false);
+
+        assertEquals(List.of(found), page.items());
+        assertNull(page.next());
+    }
+
     @Test
     void validateAuthorName_InvalidName_ThrowsException() {
         assertThrows(InvalidProperNameException.class,
@@ -217,7 +258,7 @@ class AuthorServiceTest {
 
     @Test
     void delete_AuthorNotFound_ThrowsResourceNotFoundException() {
-        when(authorRepository.findById(1)).thenReturn(Optional.empty());
+        when(authorRepository.findWithBooksById(1)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> authorService.delete(1));
     }
@@ -235,7 +276,8 @@ class AuthorServiceTest {
         List<Author> authors = List.of(author);
 
         when(bookRepository.findById(1)).thenReturn(Optional.of(book));
-        when(authorRepository.findByNameAndSurname("John", "Doe")).thenReturn(existingAuthor);
+        when(authorRepository.findExistingByFullName(authors))
+                .thenReturn(new HashMap<>(Map.of(List.of("John", "Doe"), existingAuthor)));
 
         assertThrows(BadRequestException.class, () -> authorService.createBulk(authors, 1));
     }
@@ -266,13 +308,13 @@ class AuthorServiceTest {
 
     @Test
     void findById_AuthorInCache_ReturnsCachedAuthor() {
-        when(authorCacheId.get(1)).thenReturn(author);
+        doReturn(author).when(authorCacheId).getOrLoad(eq(1), any());
 
         Author result = authorService.findById(1);
 
         assertNotNull(result);
         assertEquals("John", result.getName());
-        verify(authorRepository, never()).findById(anyInt());
+        verify(authorRepository, never()).findWithBookIdsById(anyInt());
     }
 
     @Test
@@ -287,7 +329,7 @@ class AuthorServiceTest {
 
         author.getBooks().add(book);
 
-        when(authorRepository.findById(1)).thenReturn(Optional.of(author));
+        when(authorRepository.findWithBooksById(1)).thenReturn(Optional.of(author));
 
         boolean result = authorService.delete(1);
 
@@ -302,7 +344,7 @@ class AuthorServiceTest {
         List<Author> authors = List.of(author);
 
         when(bookRepository.findById(1)).thenReturn(Optional.of(book));
-        when(authorRepository.findByNameAndSurname("John", "Doe")).thenReturn(null);
+        when(authorRepository.findExistingByFullName(authors)).thenReturn(new HashMap<>());
         when(authorRepository.save(any())).thenReturn(author);
 
         List<Author> result = authorService.createBulk(authors, 1);
@@ -329,13 +371,17 @@ class AuthorServiceTest {
         List<Author> authors = List.of(author);
 
         when(bookRepository.findById(1)).thenReturn(Optional.of(book));
-        when(authorRepository.findByNameAndSurname("John", "Doe")).thenReturn(existingAuthor);
+        when(authorRepository.findExistingByFullName(authors))
+                .thenReturn(new HashMap<>(Map.of(List.of("John", "Doe"), existingAuthor)));
+        when(authorRepository.getReferenceById(2)).thenReturn(existingAuthor);
 
         List<Author> result = authorService.createBulk(authors, 1);
 
         assertEquals(1, result.size());
         assertEquals(2, result.get(0).getId());
-        verify(bookRepository).save(book);
+        // Книга управляемая: связи записываются одним flush после всех частей, без save
+        assertTrue(book.getAuthors().contains(existingAuthor));
+        verify(bookRepository, never()).save(book);
     }
 
     @Test
@@ -349,7 +395,8 @@ class AuthorServiceTest {
         book.getAuthors().add(existingAuthor);
 
         when(bookRepository.findById(1)).thenReturn(Optional.of(book));
-        when(authorRepository.findByNameAndSurname("John", "Doe")).thenReturn(existingAuthor);
+        when(authorRepository.findExistingByFullName(any()))
+                .thenReturn(new HashMap<>(Map.of(List.of("John", "Doe"), existingAuthor)));
 
         List<Author> authors = List.of(author);
 
@@ -362,7 +409,7 @@ class AuthorServiceTest {
         book.getAuthors().add(author);
         author.getBooks().add(book);
 
-        when(authorRepository.findById(1)).thenReturn(Optional.of(author));
+        when(authorRepository.findWithBooksById(1)).thenReturn(Optional.of(author));
 
         boolean result = authorService.delete(1);
 
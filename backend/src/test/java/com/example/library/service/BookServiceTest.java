@@ -1,5 +1,10 @@
 package com.example.library.service;
 
+import com.example.library.config.SearchProperties;
+import com.example.library.dto.BookAuthorRow;
+import com.example.library.dto.BookDto;
+import com.example.library.dto.BookReviewRow;
+import com.example.library.dto.BookSearchHit;
 import com.example.library.exception.*;
 import com.example.library.model.Author;
 import com.example.library.model.Book;
@@ -7,15 +12,24 @@ import com.example.library.model.Review;
 import com.example.library.repository.AuthorRepository;
 import com.example.library.repository.BookRepository;
 import com.example.library.repository.ReviewRepository;
+import com.example.library.util.CacheTag;
 import com.example.library.util.CacheUtil;
+import com.example.library.util.DependencyIndex;
+import com.example.library.util.KeysetPage;
+import com.example.library.util.PageCursor;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -39,9 +53,14 @@ class BookServiceTest {
     private CacheUtil<Integer, Author> authorCacheId;
 
     @Mock
-    private CacheUtil<Integer, List<Review>> reviewCacheId;
+    private DependencyIndex cacheDependencies;
+
+    @Mock
+    private SuggestService suggestService;
+
+    @Mock
+    private EntityManager entityManager;
 
-    @InjectMocks
     private BookService bookService;
 
     private Book book;
@@ -49,6 +68,15 @@ class BookServiceTest {
 
     @BeforeEach
     void setUp() {
+        // Кэши одного типа передаются явно: @InjectMocks не различает их по generic-параметрам
+        bookService = new BookService(bookRepository, authorRepository, reviewRepository,
+                bookCacheId, authorCacheId, cacheDependencies, suggestService,
+                new SearchProperties(), new BulkWriter(entityManager));
+        // Загрузка через кэш делегируется переданному загрузчику
+        lenient().when(bookCacheId.getOrLoad(anyInt(), any())).thenAnswer(invocation ->
+                invocation.<Function<Integer, Book>>getArgument(1)
+                        .apply(invocation.getArgument(0)));
+
         book = new Book();
         book.setId(1);
         book.setTitle("Test Book");
@@ -75,11 +103,17 @@ class BookServiceTest {
     void create_ValidBook_ReturnsCreatedBook() {
         when(authorRepository.findByNameAndSurname("John", "Doe")).thenReturn(author);
         when(bookRepository.save(any(Book.class))).thenReturn(book);
+        when(reviewRepository.save(any(Review.class))).thenAnswer(i -> i.getArgument(0));
 
         Book result = bookService.create(book);
 
         assertNotNull(result);
         assertEquals("Test Book", result.getTitle());
+        // Кэшированные записи с этим автором содержат его список книг и устаревают
+        verify(cacheDependencies).invalidate(argThat((Collection<CacheTag> tags) ->
+                tags.contains(CacheTag.author(author.getId()))));
+        verify(authorCacheId).evict(author.getId());
+        verify(authorCacheId, never()).put(anyInt(), any());
     }
 
     @Test
@@ -96,13 +130,38 @@ class BookServiceTest {
     @Test
     void createBulk_ValidBooks_ReturnsCreatedBooks() {
         List<Book> books = List.of(book);
-        when(authorRepository.findByNameAndSurname("John", "Doe")).thenReturn(author);
+        when(authorRepository.findExistingByFullName(any()))
+                .thenReturn(new HashMap<>(Map.of(List.of("John", "Doe"), author)));
         when(bookRepository.save(any(Book.class))).thenReturn(book);
 
         List<Book> result = bookService.createBulk(books);
 
         assertNotNull(result);
         assertEquals(1, result.size());
+        verify(authorRepository, never()).findByNameAndSurname(any(), any());
+        verify(entityManager).flush();
+        verify(entityManager).clear();
+    }
+
+    @Test
+    void createBulk_NewAuthorOfSeveralBooks_SavedAsOneEntity() {
+        Book second = new Book();
+        second.setTitle("Second Book");
+        Author sameAuthor = new Author();
+        sameAuthor.setName("Jane");
+        sameAuthor.setSurname("Roe");
+        Author newAuthor = new Author();
+        newAuthor.setName("Jane");
+        newAuthor.setSurname("Roe");
+        book.setAuthors(new ArrayList<>(List.of(newAuthor)));
+        second.setAuthors(new ArrayList<>(List.of(sameAuthor)));
+        when(authorRepository.findExistingByFullName(any())).thenReturn(new HashMap<>());
+        when(bookRepository.save(any(Book.class))).thenAnswer(i -> i.getArgument(0));
+
+        bookService.createBulk(List.of(book, second));
+
+        assertSame(newAuthor, second.getAuthors().get(0));
+        verify(authorRepository).findExistingByFullName(any());
     }
 
     @Test
@@ -112,7 +171,7 @@ class BookServiceTest {
 
     @Test
     void findById_ExistingId_ReturnsBook() {
-        when(bookRepository.findById(1)).thenReturn(Optional.of(book));
+        when(bookRepository.findDetailById(1)).thenReturn(Optional.of(book));
 
         Book result = bookService.findById(1);
 
@@ -120,9 +179,99 @@ class BookServiceTest {
         assertEquals("Test Book", result.getTitle());
     }
 
+    @Test
+    void findById_NonExistingId_ThrowsResourceNotFoundException() {
+        when(bookRepository.findDetailById(2)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> bookService.findById(2));
+    }
+
+    @Test
+    void findById_KnownAbsentId_ThrowsWithoutQuery() {
+        doReturn(null).when(bookCacheId).getOrLoad(eq(2), any());
+
+        assertThrows(ResourceNotFoundException.class, () -> bookService.findById(2));
+        verify(bookRepository, never()).findDetailById(anyInt());
+    }
+
+    @Test
+    void findById_ConcurrentMisses_LoadFromRepositoryOnce() throws Exception {
+        int threads = 16;
+        CacheUtil<Integer, Book> realBookCache = new CacheUtil<>(10);
+        BookService service = new BookService(bookRepository, authorRepository,
+                reviewRepository, realBookCache, authorCacheId, cacheDependencies, suggestService,
+                new SearchProperties(), new BulkWriter(entityManager));
+        CountDownLatch allRequested = new CountDownLatch(threads);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        when(bookRepository.findDetailById(1)).thenAnswer(invocation -> {
+            releaseLoad.await(10, TimeUnit.SECONDS);
+            return Optional.of(book);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Book>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    allRequested.countDown();
+                    return service.findById(1);
+                }));
+            }
+            allRequested.await(10, TimeUnit.SECONDS);
+            // Даём всем потокам дойти до ожидания загрузки
+            Thread.sleep(100);
+            releaseLoad.countDown();
+
+            for (Future<Book> result : results) {
+                assertSame(book, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(bookRepository, times(1)).findDetailById(1);
+    }
+
+    @Test
+    void readPage_ByTitle_FetchesOneExtraRowAndReturnsCursorOfLastItem() {
+        BookDto first = new BookDto(1, "Test Book");
+        when(bookRepository.findFirstPageByTitle(Limit.of(2)))
+                .thenReturn(List.of(first, new BookDto(2, "Z Book")));
+
+        KeysetPage<BookDto> page = bookService.readPage("title", null, 1, false);
+
+        assertEquals(List.of(first), page.items());
+        assertEquals(new PageCursor("Test Book", 1), page.next());
+        assertNull(page.total());
+        verify(bookRepository, never()).count();
+    }
+
+    @Test
+    void readPage_CursorFromPreviousPage_ContinuesAfterIt() {
+        String cursor = new PageCursor("Test Book", 1).encode();
+        when(bookRepository.findPageByTitle("Test Book", 1, Limit.of(21))).thenReturn(List.of());
+        when(bookRepository.count()).thenReturn(1L);
+
+        KeysetPage<BookDto> page = bookService.readPage("title", cursor, 20, true);
+
+        assertTrue(page.items().isEmpty());
+        assertNull(page.next());
+        assertEquals(1L, page.total());
+    }
+
+    @Test
+    void readPage_InvalidCursorOrSort_ThrowsBadRequestException() {
+        assertThrows(BadRequestException.class,
+                () -> bookService.readPage("id", "not a cursor!", 20, false));
+        assertThrows(BadRequestException.class,
+                () -> bookService.readPage("title", PageCursor.of(5).encode(), 20, false));
+        assertThrows(BadRequestException.class,
+                () -> bookService.readPage("rating", null, 20, false));
+    }
+
     @Test
     void delete_ExistingBook_ReturnsTrue() {
-        when(bookRepository.findById(1)).thenReturn(Optional.of(book));
+        when(bookRepository.findDetailById(1)).thenReturn(Optional.of(book));
         when(authorRepository.save(any(Author.class))).thenReturn(author);
 
         boolean result = bookService.delete(1);
@@ -131,28 +280,113 @@ class BookServiceTest {
 
     @Test
     void findBooksByReviewMessageContaining_ValidKeyword_ReturnsBooks() {
-        when(bookRepository.findBooksByReviewMessageContaining("good")).thenReturn(List.of(book));
+        when(bookRepository.searchByReviewMessage("good", 20, 0))
+                .thenReturn(List.of(hit(1, "Test Book")));
 
-        List<Book> result = bookService.findBooksByReviewMessageContaining("good");
+        List<BookDto> result = bookService.findBooksByReviewMessageContaining("good", 0, 20);
 
         assertFalse(result.isEmpty());
         assertEquals("Test Book", result.get(0).getTitle());
     }
 
+    @Test
+    void findBooksByReviewMessageContaining_FillsCollectionsFromBatchedRows() {
+        when(bookRepository.searchByReviewMessage("good", 20, 0))
+                .thenReturn(List.of(hit(1, "Test Book"), hit(2, "Other")));
+        when(bookRepository.findAuthorRows(Set.of(1, 2))).thenReturn(List.of(
+                new BookAuthorRow(1, 1, "John", "Doe"), new BookAuthorRow(2, 1, "John", "Doe")));
+        when(reviewRepository.findRowsByBookIds(Set.of(1, 2)))
+                .thenReturn(List.of(new BookReviewRow(2, 5, "Good")));
+
+        List<BookDto> result = bookService.findBooksByReviewMessageContaining("good", 0, 20);
+
+        assertEquals("Doe", result.get(0).getAuthors().get(0).getSurname());
+        assertTrue(result.get(0).getReviews().isEmpty());
+        assertEquals(1, result.get(1).getAuthors().size());
+        assertEquals("Good", result.get(1).getReviews().get(0).getMessage());
+        verify(bookRepository, never()).findAll();
+    }
+
+    @Test
+    void forEachChunk_SplitsStreamAndLoadsCollectionsPerChunk() {
+        when(bookRepository.streamAll()).thenReturn(Stream.of(new BookDto(1, "A"),
+                new BookDto(2, "B"), new BookDto(3, "C")));
+        List<List<Integer>> chunks = new ArrayList<>();
+
+        bookService.forEachChunk(2,
+                chunk -> chunks.add(chunk.stream().map(BookDto::getId).toList()));
+
+        assertEquals(List.of(List.of(1, 2), List.of(3)), chunks);
+        verify(bookRepository).findAuthorRows(Set.of(1, 2));
+        verify(bookRepository).findAuthorRows(Set.of(3));
+    }
+
     @Test
     void findBooksByReviewMessageContaining_NoResults_ThrowsException() {
-        when(bookRepository.findBooksByReviewMessageContaining("unknown")).thenReturn(Collections.emptyList());
+        when(bookRepository.searchByReviewMessage("unknown", 20, 0))
+                .thenReturn(Collections.emptyList());
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> bookService.findBooksByReviewMessageContaining("unknown", 0, 20));
+    }
+
+    @Test
+    void findBooksByReviewMessageContaining_PassesTsQueryAndOffset() {
+        when(bookRepository.searchByReviewMessage("(good <-> book) & auth:*", 10, 20))
+                .thenReturn(List.of(hit(3, "Third")));
+
+        List<BookDto> result = bookService.findBooksByReviewMessageContaining(
+                "\"good book\" auth*", 2, 10);
+
+        assertEquals(3, result.get(0).getId());
+    }
+
+    @Test
+    void findBooksByReviewMessageContaining_NoWords_ThrowsBadRequest() {
+        assertThrows(BadRequestException.class,
+                () -> bookService.findBooksByReviewMessageContaining(" !? ", 0, 20));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void findFuzzy_SetsThresholdBeforeSearchInSameCall() {
+        when(bookRepository.searchFuzzy("Вона и мир", 20, 20))
+                .thenReturn(List.of(hit(1, "Война и мир")));
+
+        List<BookDto> result = bookService.findFuzzy(" Вона и мир ", null, 1, null);
+
+        assertEquals("Война и мир", result.get(0).getTitle());
+        InOrder inOrder = inOrder(bookRepository);
+        inOrder.verify(bookRepository).setSimilarityThreshold(0.3);
+        inOrder.verify(bookRepository).searchFuzzy("Вона и мир", 20, 20);
+    }
+
+    @Test
+    void findFuzzy_InvalidThresholdOrBlankQuery_ThrowsBadRequest() {
+        assertThrows(BadRequestException.class,
+                () -> bookService.findFuzzy("title", 1.5, 0, null));
+        assertThrows(BadRequestException.class,
+                () -> bookService.findFuzzy("title", Double.NaN, 0, null));
+        assertThrows(BadRequestException.class,
+                () -> bookService.findFuzzy("  ", null, 0, null));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void findFuzzy_NoResults_ThrowsNotFound() {
+        when(bookRepository.searchFuzzy("zzz", 5, 0)).thenReturn(List.of());
 
         assertThrows(ResourceNotFoundException.class,
-                () -> bookService.findBooksByReviewMessageContaining("unknown"));
+                () -> bookService.findFuzzy("zzz", 0.6, 0, 5));
+        verify(bookRepository).setSimilarityThreshold(0.6);
     }
 
     @Test
-    void findBooksByAuthorNameAndSurnameNative_ValidNames_ReturnsBooks() {
-        when(bookRepository.findBooksByAuthorNameAndSurnameNative("John", "Doe"))
-                .thenReturn(List.of(book));
+    void findBooksByAuthorNameAndSurname_ValidNames_ReturnsBooks() {
+        when(bookRepository.findBooksByAuthorNameAndSurname("John", "Doe"))
+                .thenReturn(List.of(new BookDto(1, "Test Book")));
 
-        List<Book> result = bookService.findBooksByAuthorNameAndSurnameNative("John", "Doe");
+        List<BookDto> result = bookService.findBooksByAuthorNameAndSurname("John", "Doe");
 
         assertFalse(result.isEmpty());
         assertEquals("Test Book", result.get(0).getTitle());
@@ -167,12 +401,12 @@ class BookServiceTest {
     }
 
     @Test
-    void findBooksByAuthorNameAndSurnameNative_NoResults_ThrowsException() {
-        when(bookRepository.findBooksByAuthorNameAndSurnameNative("Unknown", "Author"))
+    void findBooksByAuthorNameAndSurname_NoResults_ThrowsException() {
+        when(bookRepository.findBooksByAuthorNameAndSurname("Unknown", "Author"))
                 .thenReturn(Collections.emptyList());
 
         assertThrows(ResourceNotFoundException.class,
-                () -> bookService.findBooksByAuthorNameAndSurnameNative("Unknown", "Author"));
+                () -> bookService.findBooksByAuthorNameAndSurname("Unknown", "Author"));
     }
     @Test
     void create_BookWithoutAuthors_ThrowsBadRequestException() {
@@ -185,12 +419,12 @@ class BookServiceTest {
     }
     @Test
     void update_NonExistingBook_ThrowsResourceNotFoundException() {
-        when(bookRepository.findById(1)).thenReturn(Optional.empty());
+        when(bookRepository.findDetailById(1)).thenReturn(Optional.empty());
         assertThrows(ResourceNotFoundException.class, () -> bookService.update(book, 1));
     }
     @Test
     void delete_BookNotFound_ThrowsResourceNotFoundException() {
-        when(bookRepository.findById(1)).thenReturn(Optional.empty());
+        when(bookRepository.findDetailById(1)).thenReturn(Optional.empty());
         assertThrows(ResourceNotFoundException.class, () -> bookService.delete(1));
     }
 
@@ -230,7 +464,7 @@ class BookServiceTest {
     @Test
     void delete_BookWithoutAuthors_ReturnsTrue() {
         book.setAuthors(null);
-        when(bookRepository.findById(1)).thenReturn(Optional.of(book));
+        when(bookRepository.findDetailById(1)).thenReturn(Optional.of(book));
 
         boolean result = bookService.delete(1);
 
@@ -240,7 +474,7 @@ class BookServiceTest {
     @Test
     void delete_BookWithoutReviews_ReturnsTrue() {
         book.setReviews(null);
-        when(bookRepository.findById(1)).thenReturn(Optional.of(book));
+        when(bookRepository.findDetailById(1)).thenReturn(Optional.of(book));
 
         boolean result = bookService.delete(1);
 
@@ -254,11 +488,25 @@ class BookServiceTest {
         author.setBooks(new ArrayList<>(List.of(anotherBook))); // другая книга
         book.setAuthors(List.of(author));
 
-        when(bookRepository.findById(1)).thenReturn(Optional.of(book));
+        when(bookRepository.findDetailById(1)).thenReturn(Optional.of(book));
 
         boolean result = bookService.delete(1);
 
         assertTrue(result);
         verify(authorRepository, never()).delete(author);
     }
-}
\ No newline at end of file
+
+    private static BookSearchHit hit(int id, String title) {
+        return new BookSearchHit() {
+            @Override
+            public Integer getId() {
+                return id;
+            }
+
+            @Override
+            public String getTitle() {
+                return title;
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.library.service;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkWriterTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Test
+    void inChunks_FlushesAndClearsAfterEachChunk() {
+        List<Integer> items = IntStream.range(0, BulkWriter.CHUNK_SIZE * 2 + 1).boxed().toList();
+        List<Integer> chunkSizes = new ArrayList<>();
+
+        List<Integer> written = new BulkWriter(entityManager).inChunks(items, chunk -> {
+            // Предыдущая часть уже отправлена в базу и вытеснена из контекста
+            verify(entityManager, times(chunkSizes.size())).clear();
+            chunkSizes.add(chunk.size());
+            return chunk;
+        });
+
+        assertEquals(items, written);
+        assertEquals(List.of(BulkWriter.CHUNK_SIZE, BulkWriter.CHUNK_SIZE, 1), chunkSizes);
+        verify(entityManager, times(3)).flush();
+        verify(entityManager, times(3)).clear();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.library.service;
+
+import com.example.library.config.CacheProperties;
+import com.example.library.util.CacheUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheCapacityServiceTest {
+
+    private final CacheProperties cacheProperties = new CacheProperties();
+    private final CacheUtil<Integer, String> hot = resizable("hot");
+    private final CacheUtil<Integer, String> cold = resizable("cold");
+    private final CacheUtil<Integer, String> fixed = new CacheUtil<>(4);
+    private final CacheCapacityService service =
+            new CacheCapacityService(List.of(hot, cold, fixed), cacheProperties, null);
+
+    @Test
+    void adjust_LowUsage_GrowsOnlyCachesThatWouldGainHits() {
+        // Горячий кэш циклически читает 6 ключей при бюджете 4: каждый промах - по
+        // недавно вытесненному ключу; холодный читает одни и те же ключи
+        for (int round = 0; round < 3; round++) {
+            for (int key = 0; key < 6; key++) {
+                hot.getOrLoad(key, String::valueOf);
+                cold.getOrLoad(key % 2, String::valueOf);
+            }
+        }
+
+        service.adjust(0.3);
+
+        assertEquals(5, hot.maximumWeight());
+        assertEquals(4, cold.maximumWeight());
+        assertEquals(4, fixed.maximumWeight());
+    }
+
+    @Test
+    void adjust_HighUsage_ShrinksCachesDownToMinimum() {
+        for (int key = 0; key < 4; key++) {
+            hot.put(key, String.valueOf(key));
+        }
+
+        service.adjust(0.9);
+        assertEquals(2, hot.maximumWeight());
+        assertEquals(2, hot.size());
+
+        service.adjust(0.95);
+        assertEquals(2, hot.maximumWeight(), "не меньше нижней границы");
+        assertEquals(2, cold.maximumWeight());
+    }
+
+    @Test
+    void adjust_ModerateUsage_KeepsBudgets() {
+        for (int key = 0; key < 12; key++) {
+            hot.getOrLoad(key % 6, String::valueOf);
+        }
+
+        service.adjust(0.7);
+
+        assertEquals(4, hot.maximumWeight());
+    }
+
+    private static CacheUtil<Integer, String> resizable(String name) {
+        return CacheUtil.<Integer, String>builder()
+                .name(name)
+                .maximumWeight(4)
+                .resizable(2, 16)
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.library.service;
+
+import com.example.library.config.CacheProperties;
+import com.example.library.util.CacheTag;
+import com.example.library.util.CacheUtil;
+import com.example.library.util.DependencyIndex;
+import com.example.library.util.InvalidationTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheInvalidationServiceTest {
+
+    private final InMemoryBus bus = new InMemoryBus();
+    private Node first;
+    private Node second;
+
+    @BeforeEach
+    void setUp() {
+        first = new Node(bus);
+        second = new Node(bus);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void put_OnOneNode_EvictsKeyOnOtherNode() {
+        second.books.put(1, "stale");
+        second.books.put(2, "untouched");
+
+        first.books.put(1, "updated");
+        first.service.flush();
+
+        assertNull(second.books.get(1));
+        assertEquals("untouched", second.books.get(2));
+        assertEquals("updated", first.books.get(1));
+    }
+
+    @Test
+    void flush_RepeatedChanges_AreCoalescedIntoOneMessage() {
+        first.books.put(1, "a");
+        first.books.put(1, "b");
+        first.books.evict(1);
+        first.reviews.evict(1);
+        first.service.flush();
+        first.service.flush();
+
+        assertEquals(1, bus.published.size());
+        assertEquals(1, bus.published.get(0).split("books", -1).length - 1);
+    }
+
+    @Test
+    void clear_OnOneNode_ClearsCacheOnOtherNode() {
+        second.authors.put(1, "author");
+        second.books.put(1, "book");
+
+        first.authors.clear();
+        first.service.flush();
+
+        assertEquals(0, second.authors.size());
+        assertEquals("book", second.books.get(1));
+    }
+
+    @Test
+    void changesInsideTransaction_ArePublishedOnlyAfterCommit() {
+        second.books.put(1, "stale");
+
+        List<TransactionSynchronization> synchronizations = runInTransaction(
+                () -> first.books.put(1, "updated"));
+        first.service.flush();
+        assertTrue(bus.published.isEmpty());
+
+        synchronizations.forEach(synchronization ->
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        first.service.flush();
+
+        assertEquals(1, bus.published.size());
+        assertNull(second.books.get(1));
+    }
+
+    @Test
+    void changesInsideRolledBackTransaction_AreNotPublished() {
+        List<TransactionSynchronization> synchronizations = runInTransaction(
+                () -> first.books.evict(1));
+
+        synchronizations.forEach(synchronization ->
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        first.service.flush();
+
+        assertTrue(bus.published.isEmpty());
+    }
+
+    @Test
+    void remoteEviction_IsNotPublishedBack() {
+        first.books.put(1, "updated");
+        first.service.flush();
+        second.service.flush();
+
+        assertEquals(1, bus.published.size());
+    }
+
+    @Test
+    void tagInvalidation_ReachesEntriesCachedOnlyOnOtherNode() {
+        // Ответ с книгой автора 7 закэширован только на втором узле
+        second.bookResponses.put(1, "book 1 by author 7");
+
+        first.dependencies.invalidate(CacheTag.author(7));
+        first.service.flush();
+
+        assertNull(second.bookResponses.get(1));
+        assertEquals(1, bus.published.size());
+        assertTrue(bus.published.get(0).contains("author:7"));
+    }
+
+    private static List<TransactionSynchronization> runInTransaction(Runnable action) {
+        TransactionSynchronizationManager.initSynchronization();
+        action.run();
+        List<TransactionSynchronization> synchronizations =
+                TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        return synchronizations;
+    }
+
+    private static final class Node {
+        final CacheUtil<Integer, String> books = named("books");
+        final CacheUtil<Integer, String> authors = named("authors");
+        final CacheUtil<Integer, String> reviews = named("reviews");
+        final DependencyIndex dependencies = new DependencyIndex();
+        final CacheUtil<Integer, String> bookResponses = CacheUtil.<Integer, String>builder()
+                .name("book-responses")
+                .maximumWeight(10)
+                .dependencies(dependencies, (id, value) -> Set.of(CacheTag.author(7)))
+                .build();
+        final CacheInvalidationService service;
+
+        Node(InMemoryBus bus) {
+            service = new CacheInvalidationService(bus, new ObjectMapper(),
+                    new CacheProperties(), List.of(books, authors, reviews), dependencies);
+            bus.subscribe(service::apply, () -> { });
+        }
+
+        private static CacheUtil<Integer, String> named(String name) {
+            return CacheUtil.<Integer, String>builder().name(name).maximumWeight(10).build();
+        }
+    }
+
+    // Доставляет сообщения всем подписчикам синхронно, включая отправителя
+    private static final class InMemoryBus implements InvalidationTransport {
+        final List<String> published = new ArrayList<>();
+        private final List<Consumer<String>> subscribers = new ArrayList<>();
+
+        @Override
+        public void publish(String payload) {
+            published.add(payload);
+            subscribers.forEach(subscriber -> subscriber.accept(payload));
+        }
+
+        @Override
+        public void subscribe(Consumer<String> onMessage, Runnable onGap) {
+            subscribers.add(onMessage);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.library.service;
+
+import com.example.library.config.CacheProperties;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.util.CacheUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheWarmupServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private AuthorRepository authorRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private final CacheProperties cacheProperties = new CacheProperties();
+    private final CacheUtil<Integer, Book> bookCacheId = new CacheUtil<>(100);
+    private final CacheUtil<Integer, Author> authorCacheId = new CacheUtil<>(100);
+    private VisitCounterService visitCounterService;
+
+    @BeforeEach
+    void setUp() {
+        cacheProperties.getWarmup().setFile(tempDir.resolve("hot-keys.json"));
+        cacheProperties.getWarmup().setMaxKeys(3);
+        cacheProperties.getWarmup().setBatchSize(2);
+        visitCounterService = new VisitCounterService();
+    }
+
+    @Test
+    void persist_KeepsHottestIdsFromVisitCounters() throws Exception {
+        visit("/books/1", 5);
+        visit("/books/2", 1);
+        visit("/books/3", 9);
+        visit("/books/4", 3);
+        visit("/books/4/reviews", 50);
+        visit("/authors/7", 2);
+
+        newService().persist();
+        CacheWarmupService.HotKeys hotKeys = newService().readHotKeys();
+
+        assertEquals(List.of(3, 1, 4), new ArrayList<>(hotKeys.books().keySet()));
+        assertEquals(List.of(7), new ArrayList<>(hotKeys.authors().keySet()));
+    }
+
+    @Test
+    void run_PreloadsPersistedIdsInBatches() throws Exception {
+        visit("/books/1", 3);
+        visit("/books/2", 2);
+        visit("/books/3", 1);
+        visit("/authors/7", 1);
+        newService().persist();
+        when(bookRepository.findDetailByIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<Book> books = new ArrayList<>();
+            for (Integer id : invocation.<Collection<Integer>>getArgument(0)) {
+                books.add(book(id));
+            }
+            return books;
+        });
+        when(authorRepository.findWithBookIdsByIdIn(anyCollection()))
+                .thenReturn(List.of(author(7)));
+
+        CacheWarmupService service = newService();
+        service.run(new DefaultApplicationArguments());
+        service.stop();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Integer>> batches = ArgumentCaptor.forClass(Collection.class);
+        verify(bookRepository, times(2)).findDetailByIdIn(batches.capture());
+        assertEquals(3, batches.getAllValues().stream()
+                .mapToInt(Collection::size).sum());
+        assertNotNull(bookCacheId.get(1));
+        assertNotNull(bookCacheId.get(3));
+        assertNotNull(authorCacheId.get(7));
+    }
+
+    @Test
+    void warmUp_SlowDatabase_StopsAtTimeout() throws Exception {
+        cacheProperties.getWarmup().setTimeout(Duration.ofMillis(200));
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findDetailByIdIn(anyCollection())).thenAnswer(invocation -> {
+            release.await();
+            return List.of();
+        });
+        visit("/books/1", 1);
+        CacheWarmupService service = newService();
+
+        long start = System.nanoTime();
+        service.warmUp(service.collectHotKeys());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        release.countDown();
+
+        assertTrue(elapsedMillis < 5_000, "warm-up took " + elapsedMillis + " ms");
+        assertEquals(0, bookCacheId.size());
+    }
+
+    private CacheWarmupService newService() {
+        return new CacheWarmupService(visitCounterService, bookRepository, authorRepository,
+                bookCacheId, authorCacheId, new ObjectMapper(), cacheProperties);
+    }
+
+    private void visit(String url, int times) {
+        for (int i = 0; i < times; i++) {
+            visitCounterService.incrementCounter(url);
+        }
+    }
+
+    private static Book book(int id) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle("Book " + id);
+        return book;
+    }
+
+    private static Author author(int id) {
+        Author author = new Author();
+        author.setId(id);
+        author.setName("Author");
+        author.setSurname("Number" + id);
+        return author;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.library.service;
+
+import com.example.library.config.CacheProperties;
+import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.mapper.AuthorMapper;
+import com.example.library.mapper.BookMapper;
+import com.example.library.mapper.ReviewMapper;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.util.CacheUtil;
+import com.example.library.util.RenderedResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResponseCacheServiceTest {
+
+    @Mock
+    private BookService bookService;
+
+    @Mock
+    private AuthorService authorService;
+
+    private final CacheUtil<Integer, Book> bookCacheId = new CacheUtil<>(10);
+    private final CacheUtil<Integer, Author> authorCacheId = new CacheUtil<>(10);
+    private final CacheUtil<Integer, RenderedResponse> bookResponseCache = new CacheUtil<>(10);
+    private final CacheUtil<Integer, RenderedResponse> authorResponseCache =
+            new CacheUtil<>(10);
+
+    private ResponseCacheService responseCacheService;
+    private Book book;
+    private Author author;
+
+    @BeforeEach
+    void setUp() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getResponses().setGzipMinSize(DataSize.ofBytes(64));
+        AuthorMapper authorMapper = new AuthorMapper();
+        responseCacheService = new ResponseCacheService(bookService, authorService,
+                new BookMapper(authorMapper, new ReviewMapper()), authorMapper,
+                new ObjectMapper(), cacheProperties, bookCacheId, authorCacheId,
+                bookResponseCache, authorResponseCache);
+
+        author = new Author();
+        author.setId(1);
+        author.setName("George");
+        author.setSurname("Orwell");
+
+        book = new Book();
+        book.setId(1);
+        book.setTitle("Animal Farm");
+        book.setAuthors(List.of(author));
+        book.setReviews(new ArrayList<>());
+    }
+
+    @Test
+    void getBook_RepeatedRequests_RenderOnce() {
+        when(bookService.findById(1)).thenReturn(book);
+
+        RenderedResponse first = responseCacheService.getBook(1);
+        RenderedResponse second = responseCacheService.getBook(1);
+
+        assertSame(first, second);
+        assertEquals("{\"id\":1,\"title\":\"Animal Farm\","
+                        + "\"authors\":[{\"id\":1,\"name\":\"George\",\"surname\":\"Orwell\"}],"
+                        + "\"reviews\":[]}",
+                new String(first.json(), StandardCharsets.UTF_8));
+        verify(bookService, times(1)).findById(1);
+    }
+
+    @Test
+    void getBook_BookCacheInvalidated_RendersAgain() {
+        when(bookService.findById(1)).thenReturn(book);
+        responseCacheService.getBook(1);
+
+        book.setTitle("1984");
+        bookCacheId.evict(1);
+
+        String json = new String(responseCacheService.getBook(1).json(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"title\":\"1984\""));
+        verify(bookService, times(2)).findById(1);
+    }
+
+    @Test
+    void getAuthor_AuthorCacheUpdated_RendersAgain() {
+        when(authorService.findById(1)).thenReturn(author);
+        responseCacheService.getAuthor(1);
+
+        author.setName("Eric");
+        authorCacheId.put(1, author);
+
+        String json = new String(responseCacheService.getAuthor(1).json(),
+                StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"name\":\"Eric\""));
+    }
+
+    @Test
+    void getBook_NotFound_PropagatesAndCachesNothing() {
+        when(bookService.findById(2)).thenThrow(new ResourceNotFoundException("not found"));
+
+        assertThrows(ResourceNotFoundException.class, () -> responseCacheService.getBook(2));
+        assertEquals(0, bookResponseCache.size());
+    }
+
+    @Test
+    void toResponseEntity_GzipAccepted_ReturnsCompressedBody() throws Exception {
+        when(bookService.findById(1)).thenReturn(book);
+        RenderedResponse response = responseCacheService.getBook(1);
+        assertNotNull(response.gzip());
+
+        ResponseEntity<byte[]> gzipped = response.toResponseEntity("deflate, gzip;q=0.8");
+        ResponseEntity<byte[]> plain = response.toResponseEntity("gzip;q=0");
+
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        try (GZIPInputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(gzipped.getBody()))) {
+            assertArrayEquals(response.json(), in.readAllBytes());
+        }
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertSame(response.json(), plain.getBody());
+    }
+}
@@ -5,14 +5,17 @@ import com.example.library.model.Book;
 import com.example.library.model.Review;
 import com.example.library.repository.BookRepository;
 import com.example.library.repository.ReviewRepository;
+import com.example.library.util.CacheTag;
 import com.example.library.util.CacheUtil;
+import com.example.library.util.DependencyIndex;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.*;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -32,7 +35,12 @@ class ReviewServiceTest {
     @Mock
     private CacheUtil<Integer, Book> bookCacheId;
 
-    @InjectMocks
+    @Mock
+    private DependencyIndex cacheDependencies;
+
+    @Mock
+    private EntityManager entityManager;
+
     private ReviewService reviewService;
 
     private Review review;
@@ -40,6 +48,14 @@ class ReviewServiceTest {
 
     @BeforeEach
     void setUp() {
+        // Кэши одного типа передаются явно: @InjectMocks не различает их по generic-параметрам
+        reviewService = new ReviewService(reviewRepository, bookRepository,
+                reviewCacheId, bookCacheId, cacheDependencies, new BulkWriter(entityManager));
+        // Загрузка через кэш делегируется переданному загрузчику
+        lenient().when(reviewCacheId.getOrLoad(anyInt(), any())).thenAnswer(invocation ->
+                invocation.<Function<Integer, List<Review>>>getArgument(1)
+                        .apply(invocation.getArgument(0)));
+
         book = new Book();
         book.setId(1);
         book.setTitle("Test Book");
@@ -92,7 +108,6 @@ class ReviewServiceTest {
 
     @Test
     void getReviewsByBookId_ExistingBook_ReturnsReviews() {
-        when(bookRepository.existsById(1)).thenReturn(true);
         when(reviewRepository.findByBookId(1)).thenReturn(List.of(review));
 
         List<Review> result = reviewService.getReviewsByBookId(1);
@@ -107,6 +122,7 @@ class ReviewServiceTest {
         when(bookRepository.existsById(1)).thenReturn(false);
 
         assertThrows(ResourceNotFoundException.class, () -> reviewService.getReviewsByBookId(1));
+        verify(bookCacheId).markAbsent(1);
     }
 
     @Test
@@ -128,9 +144,19 @@ class ReviewServiceTest {
         when(reviewRepository.findById(1)).thenReturn(Optional.of(review));
 
         reviewService.delete(1);
+
+        verify(cacheDependencies).invalidate(CacheTag.book(review.getBook().getId()));
     }
 
 
+    @Test
+    void getReviewsByBookId_KnownEmptyBook_ThrowsWithoutQuery() {
+        doReturn(null).when(reviewCacheId).getOrLoad(eq(1), any());
+
+        assertThrows(ResourceNotFoundException.class, () -> reviewService.getReviewsByBookId(1));
+        verifyNoInteractions(bookRepository, reviewRepository);
+    }
+
     @Test
     void getReviewsByBookId_NoReviews_ThrowsException() {
         when(bookRepository.existsById(1)).thenReturn(true);
@@ -144,6 +170,7 @@ class ReviewServiceTest {
         assertEquals("No reviews found for book with id: 1", exception.getMessage());
 
         verify(reviewCacheId, never()).put(anyInt(), any());
+        verify(bookCacheId, never()).markAbsent(1);
         verify(reviewRepository).findByBookId(1);
     }
 
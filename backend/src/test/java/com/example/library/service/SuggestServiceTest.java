@@ -0,0 +1,75 @@
+package com.example.library.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.example.library.dto.AuthorDto;
+import com.example.library.dto.BookDto;
+import com.example.library.dto.SuggestionDto;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SuggestServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private AuthorRepository authorRepository;
+
+    @InjectMocks
+    private SuggestService suggestService;
+
+    @BeforeEach
+    void setUp() {
+        when(bookRepository.streamAll()).thenReturn(Stream.of(new BookDto(1, "Война и мир")));
+        when(authorRepository.streamAll())
+                .thenReturn(Stream.of(new AuthorDto(1, "Лев", "Толстой")));
+        suggestService.run(null);
+    }
+
+    @Test
+    void run_IndexesBooksAndAuthors() {
+        assertEquals(List.of(SuggestionDto.book(1, "Война и мир")),
+                suggestService.suggest("мир", 10));
+        assertEquals(List.of(SuggestionDto.author(1, "Лев", "Толстой")),
+                suggestService.suggest("тол", 10));
+    }
+
+    // Вне транзакции изменения применяются сразу
+    @Test
+    void bookSavedAndDeleted_UpdateIndexWithAuthors() {
+        Author author = new Author();
+        author.setId(2);
+        author.setName("Фёдор");
+        author.setSurname("Достоевский");
+        Book book = new Book();
+        book.setId(2);
+        book.setTitle("Бесы");
+        book.setAuthors(new ArrayList<>(List.of(author)));
+
+        suggestService.bookSaved(book);
+
+        assertEquals(List.of(SuggestionDto.book(2, "Бесы")), suggestService.suggest("бе", 10));
+        assertEquals(1, suggestService.suggest("дост", 10).size());
+
+        suggestService.bookDeleted(2);
+        suggestService.authorDeleted(2);
+
+        assertTrue(suggestService.suggest("бе", 10).isEmpty());
+        assertTrue(suggestService.suggest("дост", 10).isEmpty());
+    }
+}
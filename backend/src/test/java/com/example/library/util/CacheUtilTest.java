@@ -0,0 +1,763 @@
+package com.example.library.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheUtilTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    void get_AfterPut_ReturnsValue() {
+        CacheUtil<Integer, String> cache = new CacheUtil<>(10);
+
+        cache.put(1, "one");
+
+        assertEquals("one", cache.get(1));
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    void put_OverCapacity_EvictsLeastRecentlyUsed() {
+        CacheUtil<Integer, String> cache = new CacheUtil<>(3);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(3, "three");
+
+        cache.get(1);
+        cache.put(4, "four");
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get(2));
+        assertEquals("one", cache.get(1));
+        assertEquals("four", cache.get(4));
+    }
+
+    @Test
+    void evictAndClear_RemoveEntries() {
+        CacheUtil<Integer, String> cache = new CacheUtil<>(10);
+        cache.put(1, "one");
+        cache.put(2, "two");
+
+        cache.evict(1);
+        assertNull(cache.get(1));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        cache.put(3, "three");
+        assertEquals("three", cache.get(3));
+    }
+
+    @Test
+    void get_AfterExpireAfterWrite_ReturnsNull() {
+        AtomicLong time = new AtomicLong();
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .ticker(time::get)
+                .build();
+        cache.put(1, "one");
+
+        time.addAndGet(Duration.ofSeconds(59).toNanos());
+        assertEquals("one", cache.get(1));
+
+        time.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void get_AfterExpireAfterAccess_ReturnsNullOnlyWhenIdle() {
+        AtomicLong time = new AtomicLong();
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .expireAfterAccess(Duration.ofMinutes(1))
+                .ticker(time::get)
+                .build();
+        cache.put(1, "one");
+        cache.put(2, "two");
+
+        for (int i = 0; i < 3; i++) {
+            time.addAndGet(Duration.ofSeconds(40).toNanos());
+            assertEquals("one", cache.get(1));
+        }
+
+        assertNull(cache.get(2));
+        cache.cleanUp();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void put_OverMaximumWeight_EvictsByWeightInsteadOfCount() {
+        CacheUtil<Integer, List<Integer>> cache = CacheUtil.<Integer, List<Integer>>builder()
+                .maximumWeight(10)
+                .weigher(Weigher.elements())
+                .build();
+        cache.put(1, Collections.nCopies(4, 1));
+        cache.put(2, Collections.nCopies(4, 2));
+        cache.put(3, Collections.nCopies(1, 3));
+        assertEquals(9, cache.weightedSize());
+
+        cache.put(4, Collections.nCopies(3, 4));
+
+        assertNull(cache.get(1));
+        assertEquals(3, cache.size());
+        assertEquals(8, cache.weightedSize());
+    }
+
+    @Test
+    void put_HeavierThanMaximumWeight_IsNotCached() {
+        CacheUtil<Integer, List<Integer>> cache = CacheUtil.<Integer, List<Integer>>builder()
+                .maximumWeight(5)
+                .weigher(Weigher.elements())
+                .build();
+        cache.put(1, Collections.nCopies(2, 1));
+        cache.put(1, Collections.nCopies(6, 1));
+
+        assertNull(cache.get(1));
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    void stats_CountHitsMissesEvictionsAndLoads() {
+        CacheUtil<Integer, String> cache = new CacheUtil<>(2);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.get(1);
+        cache.get(3);
+        cache.getOrLoad(3, key -> "three");
+        assertThrows(IllegalStateException.class, () -> cache.getOrLoad(4, key -> {
+            throw new IllegalStateException("db down");
+        }));
+
+        CacheStats stats = cache.stats();
+
+        assertEquals(1, stats.hitCount());
+        assertEquals(3, stats.missCount());
+        assertEquals(0.25, stats.hitRatio());
+        assertEquals(1, stats.evictionCount());
+        assertEquals(1, stats.loadSuccessCount());
+        assertEquals(1, stats.loadFailureCount());
+        assertTrue(stats.averageLoadPenaltyNanos() > 0);
+        assertTrue(cache.estimatedFootprint() > 0);
+    }
+
+    @Test
+    void markAbsent_RemembersMissingKeyUntilNegativeTtlOrPut() {
+        AtomicLong time = new AtomicLong();
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .expireAbsentAfter(Duration.ofSeconds(30))
+                .ticker(time::get)
+                .build();
+
+        cache.markAbsent(1);
+        cache.markAbsent(2);
+        assertTrue(cache.isAbsent(1));
+        assertNull(cache.get(1));
+
+        cache.put(1, "one");
+        assertFalse(cache.isAbsent(1));
+        assertEquals("one", cache.get(1));
+
+        time.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertFalse(cache.isAbsent(2));
+        assertEquals("one", cache.get(1));
+    }
+
+    @Test
+    void markAbsent_WithoutNegativeTtl_IsIgnored() {
+        CacheUtil<Integer, String> cache = new CacheUtil<>(10);
+
+        cache.markAbsent(1);
+
+        assertFalse(cache.isAbsent(1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void getOrLoad_LoaderReturnsNull_MarksKeyAbsent() {
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .expireAbsentAfter(Duration.ofSeconds(30))
+                .build();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.getOrLoad(1, key -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.getOrLoad(1, key -> {
+            loads.incrementAndGet();
+            return "one";
+        }));
+
+        assertEquals(1, loads.get());
+        assertTrue(cache.isAbsent(1));
+    }
+
+    @Test
+    void invalidationListener_NotifiedOnExplicitChangesOnly() {
+        CacheUtil<Integer, String> cache = new CacheUtil<>(2);
+        CacheUtil<Integer, String> dependent = new CacheUtil<>(10);
+        cache.addInvalidationListener(InvalidationListener.evicting(dependent));
+        dependent.put(1, "rendered-1");
+        dependent.put(2, "rendered-2");
+        dependent.put(3, "rendered-3");
+
+        cache.getOrLoad(3, key -> "three");
+        assertEquals("rendered-3", dependent.get(3));
+
+        cache.put(1, "one");
+        assertNull(dependent.get(1));
+        assertEquals("rendered-2", dependent.get(2));
+
+        cache.evict(2);
+        assertNull(dependent.get(2));
+
+        cache.clear();
+        assertEquals(0, dependent.size());
+    }
+
+    @Test
+    void offHeap_EvictedEntryIsDemotedAndPromotedOnGet() {
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(2)
+                .offHeap(1024, Codec.javaSerialization())
+                .build();
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(3, "three");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.offHeapSize());
+
+        assertEquals("one", cache.get(1));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.offHeapSize());
+        assertEquals("two", cache.get(2));
+        assertEquals(2, cache.stats().hitCount());
+        assertEquals(0, cache.stats().missCount());
+    }
+
+    @Test
+    void offHeap_EvictAndPutDropOffHeapCopy() {
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(1)
+                .offHeap(1024, Codec.javaSerialization())
+                .build();
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.evict(1);
+        assertNull(cache.get(1));
+
+        cache.put(3, "three");
+        cache.put(2, "two v2");
+        assertEquals("two v2", cache.get(2));
+        cache.clear();
+        assertEquals(0, cache.offHeapSize());
+        assertNull(cache.get(3));
+    }
+
+    @Test
+    void offHeap_ExpiredEntryIsNotPromoted() {
+        AtomicLong time = new AtomicLong();
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(1)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .offHeap(1024, Codec.javaSerialization())
+                .ticker(time::get)
+                .build();
+        cache.put(1, "one");
+        cache.put(2, "two");
+
+        time.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertEquals("one", cache.get(1));
+
+        time.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertNull(cache.get(2));
+        assertNull(cache.get(1));
+        assertEquals(2, cache.stats().expirationCount());
+    }
+
+    @Test
+    void refreshAhead_HotEntryReloadsInBackgroundWhileServingOldValue() {
+        AtomicLong time = new AtomicLong();
+        List<Runnable> tasks = new ArrayList<>();
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .refreshAhead(Duration.ofMinutes(1), 2, tasks::add)
+                .ticker(time::get)
+                .build();
+        AtomicInteger loads = new AtomicInteger();
+        cache.getOrLoad(1, key -> "v" + loads.incrementAndGet());
+
+        time.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertEquals("v1", cache.getOrLoad(1, key -> "v" + loads.incrementAndGet()));
+        assertTrue(tasks.isEmpty(), "одно чтение - запись ещё не горячая");
+        assertEquals("v1", cache.getOrLoad(1, key -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", cache.getOrLoad(1, key -> "v" + loads.incrementAndGet()));
+        assertEquals(1, tasks.size(), "повторное обновление не планируется, пока идёт текущее");
+
+        tasks.get(0).run();
+
+        assertEquals("v2", cache.get(1));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void refreshAhead_ExplicitPutDuringReload_WinsOverRefreshedValue() {
+        AtomicLong time = new AtomicLong();
+        List<Runnable> tasks = new ArrayList<>();
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .refreshAhead(Duration.ofMinutes(1), 1, tasks::add)
+                .ticker(time::get)
+                .build();
+        cache.put(1, "old");
+        time.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        cache.getOrLoad(1, key -> {
+            cache.put(1, "written");
+            return "reloaded";
+        });
+        tasks.get(0).run();
+
+        assertEquals("written", cache.get(1));
+    }
+
+    @Test
+    void refreshAhead_RejectedTask_DoesNotBlockAndRetriesLater() {
+        AtomicLong time = new AtomicLong();
+        AtomicInteger attempts = new AtomicInteger();
+        List<Runnable> accepted = new ArrayList<>();
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .refreshAhead(Duration.ofMinutes(1), 1, task -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new RejectedExecutionException("queue is full");
+                    }
+                    accepted.add(task);
+                })
+                .ticker(time::get)
+                .build();
+        cache.put(1, "old");
+        time.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        assertEquals("old", cache.getOrLoad(1, key -> "new"));
+        assertEquals("old", cache.getOrLoad(1, key -> "new"));
+        accepted.forEach(Runnable::run);
+
+        assertEquals(2, attempts.get());
+        assertEquals("new", cache.get(1));
+    }
+
+    @Test
+    void resize_ShrinksWithinBoundsAndEvictsLeastRecentlyUsed() {
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(4)
+                .resizable(2, 8)
+                .build();
+        for (int i = 1; i <= 4; i++) {
+            cache.put(i, "v" + i);
+        }
+        cache.get(1);
+
+        assertEquals(2, cache.resize(1));
+        assertEquals(2, cache.size());
+        assertEquals("v1", cache.get(1));
+        assertEquals("v4", cache.get(4));
+
+        assertEquals(8, cache.resize(100));
+        for (int i = 5; i <= 10; i++) {
+            cache.put(i, "v" + i);
+        }
+        assertEquals(8, cache.size());
+        assertThrows(IllegalStateException.class, () -> new CacheUtil<Integer, String>(4)
+                .resize(8));
+    }
+
+    @Test
+    void getOrLoad_MissOnRecentlyEvictedKey_CountsGhostHit() {
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(2)
+                .resizable(1, 4)
+                .build();
+        cache.getOrLoad(1, key -> "v1");
+        cache.getOrLoad(2, key -> "v2");
+        cache.getOrLoad(3, key -> "v3");
+
+        cache.getOrLoad(1, key -> "v1");
+        cache.getOrLoad(9, key -> "v9");
+        cache.evict(2);
+        cache.getOrLoad(2, key -> "v2");
+
+        assertEquals(1, cache.ghostHitCount(), "явный evict не считается нехваткой места");
+    }
+
+    @Test
+    void put_InTransaction_AppliedOnlyAfterCommit() {
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .transactional()
+                .build();
+        cache.put(1, "old");
+
+        List<TransactionSynchronization> committed =
+                runInTransaction(() -> cache.put(1, "new"));
+        assertNull(cache.get(1), "до фиксации читатели идут в источник");
+        complete(committed, true);
+        assertEquals("new", cache.get(1));
+
+        complete(runInTransaction(() -> cache.put(2, "phantom")), false);
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    void getOrLoad_InWriteTransaction_NotSharedWithOtherThreads() {
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .transactional()
+                .build();
+        ExecutorService outside = Executors.newSingleThreadExecutor();
+        try {
+            List<TransactionSynchronization> rolledBack = runInTransaction(() ->
+                    assertEquals("uncommitted", cache.getOrLoad(1, key -> {
+                        // Промах вне транзакции во время загрузки не ждёт её результата
+                        String read = CompletableFuture
+                                .supplyAsync(() -> cache.getOrLoad(1, k -> "committed"),
+                                        outside)
+                                .orTimeout(5, TimeUnit.SECONDS)
+                                .join();
+                        assertEquals("committed", read);
+                        return "uncommitted";
+                    })));
+            complete(rolledBack, false);
+        } finally {
+            outside.shutdownNow();
+        }
+
+        assertEquals("committed", cache.get(1));
+    }
+
+    @Test
+    void put_OverlappingTransactions_EvictsInsteadOfStoring() {
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .transactional()
+                .build();
+
+        List<TransactionSynchronization> first = runInTransaction(() -> cache.put(1, "first"));
+        List<TransactionSynchronization> second =
+                runInTransaction(() -> cache.put(1, "second"));
+        complete(second, true);
+        complete(first, true);
+
+        assertNull(cache.get(1));
+        complete(runInTransaction(() -> cache.put(1, "third")), true);
+        assertEquals("third", cache.get(1));
+    }
+
+    @Test
+    void getOrLoad_KeyChangedDuringLoad_DoesNotStoreLoadedValue() {
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(10)
+                .expireAbsentAfter(Duration.ofMinutes(1))
+                .build();
+
+        assertEquals("stale", cache.getOrLoad(1, key -> {
+            cache.evict(key);
+            return "stale";
+        }));
+        assertNull(cache.getOrLoad(2, key -> {
+            cache.put(2, "created");
+            return null;
+        }));
+
+        assertNull(cache.get(1));
+        assertEquals("created", cache.get(2));
+        assertEquals("fresh", cache.getOrLoad(1, key -> "fresh"));
+        assertEquals("fresh", cache.get(1));
+    }
+
+    @Test
+    void preload_KeyChangedDuringBatchLoad_DoesNotStoreLoadedValue() {
+        CacheUtil<Integer, String> cache = new CacheUtil<>(10);
+        cache.put(3, "cached");
+
+        int stored = cache.preload(List.of(1, 2, 3), batch -> {
+            cache.evict(1);
+            cache.put(2, "created");
+            return Map.of(1, "stale", 2, "old", 3, "old");
+        });
+
+        assertEquals(0, stored);
+        assertNull(cache.get(1));
+        assertEquals("created", cache.get(2));
+        assertEquals("cached", cache.get(3));
+    }
+
+    @Test
+    void preload_AbsentKeys_StoredAndUnknownKeysIgnored() {
+        CacheUtil<Integer, String> cache = new CacheUtil<>(10);
+
+        int stored = cache.preload(List.of(1, 2),
+                batch -> Map.of(1, "one", 2, "two", 9, "foreign"));
+
+        assertEquals(2, stored);
+        assertEquals("one", cache.get(1));
+        assertEquals("two", cache.get(2));
+        assertNull(cache.get(9));
+    }
+
+    @Test
+    void getOrLoad_ConcurrentMisses_ShareSingleLoad() throws Exception {
+        CacheUtil<Integer, String> cache = new CacheUtil<>(10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        List<String> results = new CopyOnWriteArrayList<>();
+
+        runConcurrently(thread -> {
+            if (thread > 0) {
+                loaderStarted.await(10, TimeUnit.SECONDS);
+            }
+            results.add(cache.getOrLoad(1, key -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                awaitQuietly(releaseLoader);
+                return valueFor(key);
+            }));
+        }, () -> {
+            loaderStarted.await(10, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            releaseLoader.countDown();
+        });
+
+        assertEquals(1, loads.get());
+        assertEquals(THREADS, results.size());
+        assertTrue(results.stream().allMatch(valueFor(1)::equals));
+    }
+
+    @Test
+    void getOrLoad_LoaderFails_PropagatesToAllWaitersAndCachesNothing() throws Exception {
+        CacheUtil<Integer, String> cache = new CacheUtil<>(10);
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            if (thread > 0) {
+                loaderStarted.await(10, TimeUnit.SECONDS);
+            }
+            try {
+                cache.getOrLoad(1, key -> {
+                    loaderStarted.countDown();
+                    awaitQuietly(releaseLoader);
+                    throw new IllegalStateException("db down");
+                });
+            } catch (IllegalStateException e) {
+                failures.incrementAndGet();
+            }
+        }, () -> {
+            loaderStarted.await(10, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            releaseLoader.countDown();
+        });
+
+        assertEquals(THREADS, failures.get());
+        assertEquals(0, cache.size());
+        assertEquals("one", cache.getOrLoad(1, key -> "one"));
+    }
+
+    @Test
+    void concurrentAccess_WithinCapacity_NeverLosesOrCorruptsEntries() throws Exception {
+        int keysPerThread = 2_000;
+        CacheUtil<Integer, String> cache = new CacheUtil<>(THREADS * keysPerThread * 4, THREADS);
+        AtomicInteger corrupted = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            int base = thread * keysPerThread;
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < keysPerThread; i++) {
+                    int key = base + i;
+                    cache.put(key, valueFor(key));
+                    // Чужие ключи читаются и удаляются, пока владельцы их пишут
+                    int foreign = (key + keysPerThread) % (THREADS * keysPerThread);
+                    String value = cache.get(foreign);
+                    if (value != null && !value.equals(valueFor(foreign))) {
+                        corrupted.incrementAndGet();
+                    }
+                    cache.evict(-key - 1);
+                }
+            }
+        });
+
+        assertEquals(0, corrupted.get());
+        assertEquals(THREADS * keysPerThread, cache.size());
+        for (int key = 0; key < THREADS * keysPerThread; key++) {
+            assertEquals(valueFor(key), cache.get(key));
+        }
+    }
+
+    @Test
+    void concurrentAccess_IntKeys_NeverReturnsValueOfAnotherKey() throws Exception {
+        int capacity = 512;
+        CacheUtil<Integer, String> cache = CacheUtil.<Integer, String>builder()
+                .maximumWeight(capacity)
+                .concurrencyLevel(THREADS)
+                .intKeys()
+                .build();
+        AtomicInteger corrupted = new AtomicInteger();
+
+        // Слоты таблицы постоянно освобождаются и занимаются другими ключами
+        runConcurrently(thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 50_000; i++) {
+                int key = random.nextInt(capacity * 4);
+                switch (random.nextInt(4)) {
+                    case 0 -> cache.put(key, valueFor(key));
+                    case 1 -> cache.evict(key);
+                    default -> {
+                        String value = cache.get(key);
+                        if (value != null && !value.equals(valueFor(key))) {
+                            corrupted.incrementAndGet();
+                        }
+                    }
+                }
+            }
+        });
+
+        assertEquals(0, corrupted.get());
+        assertTrue(cache.size() <= capacity);
+        for (int key = 0; key < capacity * 4; key++) {
+            String value = cache.get(key);
+            assertTrue(value == null || value.equals(valueFor(key)));
+        }
+    }
+
+    @Test
+    void concurrentAccess_OverCapacity_StaysBoundedAndConsistent() throws Exception {
+        int capacity = 256;
+        CacheUtil<Integer, String> cache = new CacheUtil<>(capacity, THREADS);
+        AtomicInteger corrupted = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 50_000; i++) {
+                int key = random.nextInt(4 * capacity);
+                int op = random.nextInt(10);
+                if (op < 6) {
+                    String value = cache.get(key);
+                    if (value != null && !value.equals(valueFor(key))) {
+                        corrupted.incrementAndGet();
+                    }
+                } else if (op < 9) {
+                    cache.put(key, valueFor(key));
+                } else {
+                    cache.evict(key);
+                }
+            }
+        });
+
+        assertEquals(0, corrupted.get());
+        assertTrue(cache.size() <= capacity, "size " + cache.size() + " > " + capacity);
+
+        // После гонок кэш должен оставаться работоспособным
+        for (int key = 0; key < capacity; key++) {
+            cache.put(key, valueFor(key));
+        }
+        assertTrue(cache.size() <= capacity);
+        assertEquals(valueFor(capacity - 1), cache.get(capacity - 1));
+    }
+
+    private static String valueFor(int key) {
+        return "value-" + key;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runConcurrently(ThreadTask task) throws Exception {
+        runConcurrently(task, () -> {
+        });
+    }
+
+    // coordinator выполняется в тестовом потоке после старта всех рабочих потоков
+    private static void runConcurrently(ThreadTask task, Coordinator coordinator)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            coordinator.run();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Выполняет body в имитации пишущей транзакции и возвращает её синхронизации
+    private static List<TransactionSynchronization> runInTransaction(Runnable body) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            body.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            new ArrayList<>(TransactionSynchronizationManager.getResourceMap().keySet())
+                    .forEach(TransactionSynchronizationManager::unbindResource);
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void complete(List<TransactionSynchronization> synchronizations,
+                                 boolean committed) {
+        if (committed) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(committed
+                ? TransactionSynchronization.STATUS_COMMITTED
+                : TransactionSynchronization.STATUS_ROLLED_BACK));
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Coordinator {
+        void run() throws Exception;
+    }
+}
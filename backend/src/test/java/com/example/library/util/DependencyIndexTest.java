@@ -0,0 +1,170 @@
+package com.example.library.util;
+
+import com.example.library.model.Author;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependencyIndexTest {
+
+    private final DependencyIndex index = new DependencyIndex();
+    // Книга -> id авторов, автор -> id книг
+    private final CacheUtil<Integer, Set<Integer>> books = tagged(CacheTag.Type.BOOK,
+            CacheTag::author);
+    private final CacheUtil<Integer, Set<Integer>> authors = tagged(CacheTag.Type.AUTHOR,
+            CacheTag::book);
+
+    @Test
+    void invalidate_EvictsDependentEntriesAcrossCaches() {
+        books.put(1, Set.of(7));
+        books.put(2, Set.of(7, 8));
+        books.put(3, Set.of(8));
+        authors.put(7, Set.of(1, 2));
+
+        index.invalidate(CacheTag.author(7));
+
+        assertNull(books.get(1));
+        assertNull(books.get(2));
+        assertNull(authors.get(7));
+        assertEquals(Set.of(8), books.get(3));
+    }
+
+    @Test
+    void invalidate_InTransaction_RepeatsAndNotifiesAfterCommit() {
+        List<Set<CacheTag>> notified = new ArrayList<>();
+        index.addListener(notified::add);
+        books.put(1, Set.of(7));
+
+        List<TransactionSynchronization> synchronizations;
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            index.invalidate(CacheTag.author(7));
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            new ArrayList<>(TransactionSynchronizationManager.getResourceMap().keySet())
+                    .forEach(TransactionSynchronizationManager::unbindResource);
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertNull(books.get(1));
+        assertTrue(notified.isEmpty());
+
+        // Другой читатель успел загрузить незафиксированные данные
+        books.put(2, Set.of(7));
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertNull(books.get(2));
+        assertEquals(List.of(Set.of(CacheTag.author(7))), notified);
+    }
+
+    @Test
+    void put_ReplacesTagsOfPreviousValue() {
+        books.put(1, Set.of(7));
+        books.put(1, Set.of(8));
+
+        index.invalidate(CacheTag.author(7));
+
+        assertEquals(Set.of(8), books.get(1));
+    }
+
+    @Test
+    void removedEntries_AreUnregistered() {
+        CacheUtil<Integer, Set<Integer>> small = CacheUtil.<Integer, Set<Integer>>builder()
+                .maximumWeight(1)
+                .dependencies(index, (id, value) -> Set.of(CacheTag.book(id)))
+                .build();
+        small.put(1, Set.of());
+        small.put(2, Set.of());
+        books.put(3, Set.of(7));
+        books.evict(3);
+        assertEquals(1, index.dependentCount());
+
+        small.clear();
+        assertEquals(0, index.dependentCount());
+    }
+
+    @Test
+    void absentMarker_IsTaggedWithItsKey() {
+        CacheUtil<Integer, Set<Integer>> reviews = CacheUtil.<Integer, Set<Integer>>builder()
+                .maximumWeight(10)
+                .expireAbsentAfter(Duration.ofMinutes(1))
+                .dependencies(index, (bookId, value) -> Set.of(CacheTag.book(bookId)))
+                .build();
+        reviews.markAbsent(5);
+        assertTrue(reviews.isAbsent(5));
+
+        index.invalidate(CacheTag.book(5));
+
+        assertFalse(reviews.isAbsent(5));
+    }
+
+    @Test
+    void authorWithBookIds_IsTaggedWithBooksWithoutCollection() {
+        CacheUtil<Integer, Author> cache = CacheUtil.<Integer, Author>builder()
+                .maximumWeight(10)
+                .dependencies(index, CacheTag::ofAuthor)
+                .build();
+        Author author = new Author();
+        author.setId(7);
+        author.setBookIds(List.of(3));
+        cache.put(7, author);
+
+        index.invalidate(CacheTag.book(3));
+
+        assertNull(cache.get(7));
+    }
+
+    @Test
+    void getOrLoad_TagInvalidatedDuringLoad_DoesNotStoreValue() {
+        // Автор 7 изменён, пока книга 1 с ним загружалась: метки книги ещё не были
+        // зарегистрированы, и инвалидация не нашла записи
+        Set<Integer> loaded = books.getOrLoad(1, id -> {
+            index.invalidate(CacheTag.author(7));
+            return Set.of(7);
+        });
+
+        assertEquals(Set.of(7), loaded);
+        assertNull(books.get(1));
+        assertEquals(0, index.dependentCount());
+
+        // Загрузка, начатая после инвалидации, сохраняется как обычно
+        books.getOrLoad(1, id -> Set.of(7));
+        assertEquals(Set.of(7), books.get(1));
+    }
+
+    @Test
+    void invalidate_NotifiesListeners() {
+        List<Set<CacheTag>> notified = new ArrayList<>();
+        index.addListener(notified::add);
+
+        index.invalidate(Set.of(CacheTag.book(1), CacheTag.review(2)));
+
+        assertEquals(List.of(Set.of(CacheTag.book(1), CacheTag.review(2))), notified);
+        assertEquals(CacheTag.review(2), CacheTag.parse(CacheTag.review(2).toString()));
+    }
+
+    private CacheUtil<Integer, Set<Integer>> tagged(
+            CacheTag.Type type, IntFunction<CacheTag> nested) {
+        return CacheUtil.<Integer, Set<Integer>>builder()
+                .maximumWeight(10)
+                .dependencies(index, (id, ids) -> {
+                    Set<CacheTag> tags = new HashSet<>();
+                    tags.add(new CacheTag(type, id));
+                    if (ids != null) {
+                        ids.forEach(nestedId -> tags.add(nested.apply(nestedId)));
+                    }
+                    return tags;
+                })
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Воспроизведение синтетической трассы запросов на LRU и W-TinyLFU. Трасса: популярные
+ * id по закону Ципфа вперемешку с обходом, который один раз проходит по всем id подряд.
+ */
+class EvictionPolicyTraceTest {
+
+    private static final int CAPACITY = 200;
+    private static final int HOT_IDS = 2_000;
+    private static final int REQUESTS = 200_000;
+
+    @Test
+    void crawlerInterleavedWithPopularIds_TinyLfuKeepsHitRatio() {
+        int[] trace = trace(0.5);
+
+        double lru = replay(trace, false);
+        double tinyLfu = replay(trace, true);
+
+        // Половина запросов - обход без повторов, поэтому потолок около 0.3
+        assertTrue(tinyLfu > lru * 1.3, "LRU " + lru + ", W-TinyLFU " + tinyLfu);
+    }
+
+    @Test
+    void popularIdsOnly_TinyLfuIsNotWorseThanLru() {
+        int[] trace = trace(0);
+
+        double lru = replay(trace, false);
+        double tinyLfu = replay(trace, true);
+
+        assertTrue(tinyLfu >= lru - 0.01, "LRU " + lru + ", W-TinyLFU " + tinyLfu);
+    }
+
+    private static double replay(int[] trace, boolean tinyLfu) {
+        CacheUtil.Builder<Integer, Integer> builder = CacheUtil.<Integer, Integer>builder()
+                .maximumWeight(CAPACITY)
+                .intKeys();
+        if (tinyLfu) {
+            builder.windowTinyLfu();
+        }
+        CacheUtil<Integer, Integer> cache = builder.build();
+        for (int id : trace) {
+            cache.getOrLoad(id, key -> key);
+        }
+        return cache.stats().hitRatio();
+    }
+
+    // crawlShare - доля запросов обходчика, который идёт по id, начиная за популярными
+    private static int[] trace(double crawlShare) {
+        Random random = new Random(42);
+        double[] cumulative = new double[HOT_IDS];
+        double sum = 0;
+        for (int i = 0; i < HOT_IDS; i++) {
+            sum += 1.0 / Math.pow(i + 1, 0.9);
+            cumulative[i] = sum;
+        }
+
+        int[] trace = new int[REQUESTS];
+        int crawled = HOT_IDS;
+        for (int i = 0; i < REQUESTS; i++) {
+            if (random.nextDouble() < crawlShare) {
+                trace[i] = ++crawled;
+            } else {
+                double point = random.nextDouble() * sum;
+                int index = Arrays.binarySearch(cumulative, point);
+                trace[i] = (index >= 0 ? index : -index - 1) + 1;
+            }
+        }
+        return trace;
+    }
+}
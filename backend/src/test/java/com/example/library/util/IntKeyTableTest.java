@@ -0,0 +1,102 @@
+package com.example.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntKeyTableTest {
+
+    private final IntKeyTable<Entry> table = new IntKeyTable<>(Entry::key);
+
+    @Test
+    void putGetRemove_MatchesHashMapUnderRandomOperations() {
+        Map<Integer, Entry> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int step = 0; step < 100_000; step++) {
+            int key = random.nextInt(2_000) - 1_000;
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    Entry entry = new Entry(key);
+                    table.put(key, entry);
+                    expected.put(key, entry);
+                }
+                case 1 -> {
+                    Entry current = expected.get(key);
+                    assertEquals(current != null, table.remove(key, current));
+                    expected.remove(key);
+                }
+                default -> assertSame(expected.get(key), table.get(key));
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        Set<Entry> all = new HashSet<>();
+        table.forEach(all::add);
+        assertEquals(new HashSet<>(expected.values()), all);
+    }
+
+    @Test
+    void remove_OtherValueForSameKey_KeepsCurrentEntry() {
+        Entry first = new Entry(7);
+        Entry second = new Entry(7);
+        table.put(7, first);
+        table.put(7, second);
+
+        assertFalse(table.remove(7, first));
+        assertSame(second, table.get(7));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void churn_ReusesDeletedSlotsWithoutGrowing() {
+        for (int i = 0; i < 10_000; i++) {
+            Entry entry = new Entry(i);
+            table.put(i, entry);
+            table.remove(i, entry);
+        }
+
+        assertEquals(0, table.size());
+        assertEquals(16, table.capacity());
+        assertNull(table.get(9_999));
+    }
+
+    @Test
+    void remove_InsideProbeRun_KeepsOtherKeysReachable() {
+        for (int i = 1; i <= 1_000; i++) {
+            table.put(i, new Entry(i));
+        }
+        int capacity = table.capacity();
+
+        for (int i = 1; i <= 1_000; i += 2) {
+            assertTrue(table.remove(i, table.get(i)));
+        }
+
+        for (int i = 1; i <= 1_000; i++) {
+            Entry entry = table.get(i);
+            assertEquals(i % 2 == 0, entry != null, "key " + i);
+            if (entry != null) {
+                assertEquals(i, entry.key());
+            }
+        }
+        assertEquals(500, table.size());
+        assertEquals(capacity, table.capacity());
+    }
+
+    private record Entry(int key) {
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.library.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.util.UriComponentsBuilder;
+
+class KeysetPageTest {
+
+    @Test
+    void cursor_KeyWithSeparatorAndUnicode_SurvivesRoundTrip() {
+        PageCursor cursor = new PageCursor("Война и мир: том 1", 42);
+
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+        assertEquals(PageCursor.of(7), PageCursor.decode(PageCursor.of(7).encode()));
+    }
+
+    @Test
+    void toResponseEntity_HasNextPage_AddsCursorLinkAndTotal() {
+        KeysetPage<String> page = KeysetPage.of(List.of("a", "b", "c"), 2,
+                item -> new PageCursor(item, 2), 3L);
+
+        ResponseEntity<List<String>> response = page.toResponseEntity(UriComponentsBuilder
+                .fromUriString("http://localhost/books?sort=title&limit=2&cursor=old"));
+
+        String cursor = new PageCursor("b", 2).encode();
+        assertEquals(List.of("a", "b"), response.getBody());
+        assertEquals(cursor, response.getHeaders().getFirst(KeysetPage.NEXT_CURSOR_HEADER));
+        assertEquals("<http://localhost/books?sort=title&limit=2&cursor=" + cursor
+                + ">; rel=\"next\"", response.getHeaders().getFirst(HttpHeaders.LINK));
+        assertEquals("3", response.getHeaders().getFirst(KeysetPage.TOTAL_COUNT_HEADER));
+    }
+
+    @Test
+    void toResponseEntity_LastPage_HasNoLink() {
+        KeysetPage<String> page = KeysetPage.of(List.of("a"), 2, item -> PageCursor.of(1), null);
+
+        ResponseEntity<List<String>> response = page.toResponseEntity(
+                UriComponentsBuilder.fromUriString("http://localhost/books"));
+
+        assertNull(response.getHeaders().getFirst(HttpHeaders.LINK));
+        assertNull(response.getHeaders().getFirst(KeysetPage.TOTAL_COUNT_HEADER));
+    }
+}
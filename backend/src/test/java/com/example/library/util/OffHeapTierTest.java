@@ -0,0 +1,63 @@
+package com.example.library.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapTierTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void put_WrapsAroundAndEvictsOldestEntries() {
+        OffHeapTier<Integer> tier = new OffHeapTier<>(100, null);
+        for (int key = 0; key < 5; key++) {
+            assertTrue(tier.put(key, bytes(key, 30), key, 0, 0));
+        }
+
+        assertEquals(3, tier.size());
+        assertEquals(2, tier.evictionCount());
+        assertNull(tier.take(0));
+        assertNull(tier.take(1));
+        assertArrayEquals(bytes(4, 30), tier.take(4).bytes());
+        assertArrayEquals(bytes(2, 30), tier.take(2).bytes());
+        assertEquals(30, tier.usedBytes());
+    }
+
+    @Test
+    void put_OlderSequence_DoesNotReplaceNewerValue() {
+        OffHeapTier<Integer> tier = new OffHeapTier<>(100, null);
+        tier.put(1, bytes(2, 10), 2, 0, 0);
+
+        assertFalse(tier.put(1, bytes(1, 10), 1, 0, 0));
+        assertFalse(tier.put(2, bytes(1, 101), 3, 0, 0));
+        assertArrayEquals(bytes(2, 10), tier.take(1).bytes());
+    }
+
+    @Test
+    void put_MemoryMappedFile_StoresEntries() {
+        Path file = tempDir.resolve("tier.bin");
+        OffHeapTier<String> tier = new OffHeapTier<>(64, file);
+
+        tier.put("a", bytes(7, 16), 1, 5, 6);
+        OffHeapTier.Entry entry = tier.take("a");
+
+        assertTrue(Files.exists(file));
+        assertArrayEquals(bytes(7, 16), entry.bytes());
+        assertEquals(5, entry.writeTime());
+        assertEquals(6, entry.accessTime());
+        assertEquals(0, tier.size());
+    }
+
+    private static byte[] bytes(int value, int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+}
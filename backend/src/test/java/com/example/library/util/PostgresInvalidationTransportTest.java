@@ -0,0 +1,106 @@
+package com.example.library.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostgresInvalidationTransportTest {
+
+    private static final String CHANNEL = "library_cache_invalidation_test";
+    private static final String PING = "ping";
+
+    private final String url = System.getenv("DB_URL");
+    private final String username = System.getenv("DB_USERNAME");
+    private final String password = System.getenv("DB_PASSWORD");
+
+    // Требует запущенный PostgreSQL: DB_URL, DB_USERNAME, DB_PASSWORD
+    @Test
+    @EnabledIfEnvironmentVariable(named = "DB_URL", matches = ".+")
+    void publish_DeliversPayloadToOtherSubscriber() throws Exception {
+        JdbcTemplate jdbcTemplate = jdbcTemplate();
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        CountDownLatch pinged = new CountDownLatch(1);
+        try (PostgresInvalidationTransport publisher = transport(jdbcTemplate);
+             PostgresInvalidationTransport subscriber = transport(jdbcTemplate)) {
+            subscriber.subscribe(receiver(received, pinged), () -> { });
+            awaitSubscribed(publisher, pinged);
+
+            publisher.publish("{\"origin\":\"test\"}");
+
+            assertEquals("{\"origin\":\"test\"}", received.poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    // Первая подписка не сбрасывает кэши, прогретые при старте; обрыв соединения - сбрасывает
+    @Test
+    @EnabledIfEnvironmentVariable(named = "DB_URL", matches = ".+")
+    void subscribe_GapReportedOnlyOnReconnect() throws Exception {
+        JdbcTemplate jdbcTemplate = jdbcTemplate();
+        CountDownLatch pinged = new CountDownLatch(1);
+        AtomicInteger gaps = new AtomicInteger();
+        CountDownLatch reconnected = new CountDownLatch(1);
+        try (PostgresInvalidationTransport publisher = transport(jdbcTemplate);
+             PostgresInvalidationTransport subscriber = transport(jdbcTemplate)) {
+            subscriber.subscribe(receiver(new LinkedBlockingQueue<>(), pinged), () -> {
+                gaps.incrementAndGet();
+                reconnected.countDown();
+            });
+            awaitSubscribed(publisher, pinged);
+            assertEquals(0, gaps.get());
+
+            jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity"
+                    + " WHERE query = ?", Boolean.class, "LISTEN " + CHANNEL);
+
+            assertTrue(reconnected.await(20, TimeUnit.SECONDS));
+            assertEquals(1, gaps.get());
+        }
+    }
+
+    @Test
+    void constructor_InvalidChannel_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> new PostgresInvalidationTransport(
+                null, "jdbc:postgresql://localhost/db", "u", "p", "bad; DROP TABLE book"));
+    }
+
+    // Подписка устанавливается в фоне: пробное сообщение публикуется, пока не дойдёт
+    private static void awaitSubscribed(PostgresInvalidationTransport publisher,
+                                        CountDownLatch pinged) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            publisher.publish(PING);
+            if (pinged.await(100, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+        fail("Подписка на канал не установлена");
+    }
+
+    private static Consumer<String> receiver(BlockingQueue<String> received,
+                                             CountDownLatch pinged) {
+        return payload -> {
+            if (PING.equals(payload)) {
+                pinged.countDown();
+            } else {
+                received.add(payload);
+            }
+        };
+    }
+
+    private JdbcTemplate jdbcTemplate() {
+        return new JdbcTemplate(new DriverManagerDataSource(url, username, password));
+    }
+
+    private PostgresInvalidationTransport transport(JdbcTemplate jdbcTemplate) {
+        return new PostgresInvalidationTransport(jdbcTemplate, url, username, password, CHANNEL);
+    }
+}
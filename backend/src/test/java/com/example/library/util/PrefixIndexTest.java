@@ -0,0 +1,60 @@
+package com.example.library.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.library.dto.SuggestionDto;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PrefixIndexTest {
+
+    private final PrefixIndex index = new PrefixIndex();
+
+    @Test
+    void find_MatchesStartOfAnyWordIgnoringCaseAndYo() {
+        SuggestionDto warAndPeace = SuggestionDto.book(1, "Война и  мир");
+        SuggestionDto hedgehog = SuggestionDto.book(2, "Ёжик в тумане");
+        SuggestionDto author = SuggestionDto.author(3, "Лев", "Толстой");
+        index.put(warAndPeace);
+        index.put(hedgehog);
+        index.put(author);
+
+        assertEquals(List.of(warAndPeace), index.find("МИ", 10));
+        assertEquals(List.of(warAndPeace), index.find("война и м", 10));
+        assertEquals(List.of(hedgehog), index.find("ежик", 10));
+        assertEquals(List.of(author), index.find("толс", 10));
+        assertTrue(index.find("ир", 10).isEmpty());
+        assertTrue(index.find("  ", 10).isEmpty());
+    }
+
+    @Test
+    void find_ReturnsEachSuggestionOnceUpToLimit() {
+        SuggestionDto repeated = SuggestionDto.book(1, "Мир миров");
+        index.put(repeated);
+        for (int id = 2; id <= 5; id++) {
+            index.put(SuggestionDto.book(id, "Мираж " + id));
+        }
+
+        List<SuggestionDto> found = index.find("мир", 3);
+
+        assertEquals(3, found.size());
+        assertEquals(repeated, found.get(0));
+        assertEquals(1, index.find("миров", 10).size());
+    }
+
+    @Test
+    void put_ReplacesPreviousTextAndRemoveDropsAllKeys() {
+        index.put(SuggestionDto.book(1, "Old title"));
+        index.put(SuggestionDto.book(1, "New title"));
+
+        assertTrue(index.find("old", 10).isEmpty());
+        assertEquals(List.of(SuggestionDto.book(1, "New title")), index.find("title", 10));
+        assertEquals(1, index.size());
+
+        index.remove(SuggestionDto.Type.BOOK, 1);
+
+        assertTrue(index.find("title", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.library.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.example.library.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+class SearchQueryTest {
+
+    @Test
+    void toTsQuery_WordsPhrasesAndPrefixes() {
+        assertEquals("great & plot", SearchQuery.toTsQuery("  great   plot "));
+        assertEquals("(very <-> good <-> book) & end:*",
+                SearchQuery.toTsQuery("\"very good book\" end*"));
+        assertEquals("(don <-> t) & отличн:*", SearchQuery.toTsQuery("don't отличн*"));
+    }
+
+    @Test
+    void toTsQuery_DropsTsQuerySyntax() {
+        assertEquals("a & b & c", SearchQuery.toTsQuery("a & !b | (c:*"));
+        assertEquals("(open <-> quote)", SearchQuery.toTsQuery("\"open quote"));
+    }
+
+    @Test
+    void toTsQuery_NoWords_Throws() {
+        assertThrows(BadRequestException.class, () -> SearchQuery.toTsQuery(" \"\" * & "));
+        assertThrows(BadRequestException.class, () -> SearchQuery.toTsQuery(null));
+    }
+}